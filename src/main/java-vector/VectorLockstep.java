@@ -0,0 +1,361 @@
+// VectorLockstep.java
+
+import java.util.*;
+import jdk.incubator.vector.*;
+
+/** The Vector API engine of a BulkClassifier, running a ShiftAndNFA over
+    blocks of words in lockstep, one letter of every word per round.
+
+    The position sets of the words of a block are bit-sliced: each
+    position has a vector of longs with one bit per word, set while the
+    run of that word is at that position. A round ORs together the vectors
+    of the positions each position follows and ANDs in the vector of the
+    words whose next letter is of the position's class, so it costs a few
+    SIMD operations per edge of the Glushkov form for all the words of the
+    block at once. The words of a range are sorted by length first, so
+    that the words of a block end close together, and their letters are
+    read a few at a time per word into a table of letter classes with one
+    row per round. Once most words of a block have been rejected or have
+    ended, the few left are finished one at a time by the ShiftAndNFA.
+    Positions from which no accepting position can be reached are left
+    out, so that rejected words drop out early. Since a word rejected
+    after a few letters is cheaper to run on its own, each range starts
+    with a sample of words run one at a time, and the rest of the range
+    is run in lockstep only if the sample read enough letters per word.
+
+    This class needs the jdk.incubator.vector module, so it is compiled
+    from its own source root under Java 16 or later, and BulkClassifier
+    only loads it reflectively, running words one at a time when it cannot
+    be loaded. It is immutable, so one instance can be shared by any
+    number of threads. */
+class VectorLockstep implements BulkClassifier.Lockstep {
+
+   // CONSTANTS
+
+   /** shape of the vectors of bits */
+   private static final VectorSpecies<Long> SPECIES =
+      LongVector.SPECIES_PREFERRED;
+
+   /** number of longs in a vector of bits */
+   private static final int LANES = SPECIES.length();
+
+   /** number of words in a block */
+   private static final int WIDTH = 64 * LANES;
+
+   /** number of letters of each word read at a time */
+   private static final int CHUNK = 16;
+
+   /** number of running words below which a block is finished one word
+       at a time */
+   private static final int FEW = 64;
+
+   /** number of words of a range run one at a time as a sample */
+   private static final int SAMPLE = 64;
+
+   /** average number of letters the sample must read before the rest of
+       the range is run in lockstep */
+   private static final int MIN_READ = 8;
+
+
+   // STATE VARIABLES
+
+   /** the automaton */
+   private ShiftAndNFA shiftAnd;
+
+   /** equivalence classes of the letters */
+   private Alphabet alphabet;
+
+   /** positions from which an accepting position can be reached */
+   private long live;
+
+   /** number of positions */
+   private int numPositions;
+
+   /** offsets of the positions other than the initial one from which an
+       accepting position can be reached, which are the only ones computed */
+   private int[] targets;
+
+   /** offset in the table of letter classes of the class of each of the
+       positions computed */
+   private int[] targetClass;
+
+   /** offsets of the positions followed by the computed position k from
+       which an accepting position can be reached, from predStart[k] to
+       predStart[k + 1] */
+   private int[] preds, predStart;
+
+   /** offsets of the accepting positions */
+   private int[] accept;
+
+   /** offsets of the letter classes of the positions, without repeats */
+   private int[] classes;
+
+
+   // CONSTRUCTOR
+
+   /** constructs an engine running the given automaton */
+   public VectorLockstep(ShiftAndNFA shiftAnd) {
+      this.shiftAnd = shiftAnd;
+      alphabet = shiftAnd.getAlphabet();
+      numPositions = shiftAnd.getNumPositions();
+      live = shiftAnd.getLive();
+      int numClasses = alphabet.getNumClasses();
+      int[] posClass = new int[numPositions];
+      for (int c=1; c<numClasses; c++) {
+         long m = shiftAnd.getMask(c);
+         for (int q=0; q<numPositions; q++) {
+            if ((m >>> q & 1) != 0) posClass[q] = c;
+         }
+      }
+
+      // turn the follow sets of the live positions around
+      long t = live & ~1L;
+      int nt = Long.bitCount(t);
+      targets = new int[nt];
+      targetClass = new int[nt];
+      predStart = new int[nt + 1];
+      int[] p = new int[nt * numPositions];
+      boolean[] used = new boolean[numClasses];
+      int n = 0;
+      for (int k=0; k<nt; k++) {
+         int q = Long.numberOfTrailingZeros(t);
+         t &= t - 1;
+         targets[k] = q * LANES;
+         targetClass[k] = posClass[q] * LANES;
+         used[posClass[q]] = true;
+         predStart[k] = n;
+         for (int r=0; r<numPositions; r++) {
+            long f = shiftAnd.getFollow(r);
+            if ((live >>> r & 1) != 0 && (f >>> q & 1) != 0) p[n++] = r * LANES;
+         }
+      }
+      predStart[nt] = n;
+      preds = new int[n];
+      System.arraycopy(p, 0, preds, 0, n);
+      n = 0;
+      for (int c=0; c<numClasses; c++) if (used[c]) n++;
+      classes = new int[n];
+      n = 0;
+      for (int c=0; c<numClasses; c++) if (used[c]) classes[n++] = c * LANES;
+
+      long a = shiftAnd.getAccept();
+      accept = new int[Long.bitCount(a)];
+      n = 0;
+      for (int q=0; q<numPositions; q++) {
+         if ((a >>> q & 1) != 0) accept[n++] = q * LANES;
+      }
+   }
+
+
+   // CLASSIFICATION
+
+   /** classifies the given range of words, setting the bits of the accepted
+       ones in the given result bitset, or reporting each result to the
+       given listener if the bitset is null */
+   public void classify(CharSequence[] words, int from, int to, long[] bits,
+      ResultListener listener)
+   {
+      // run a sample of the words one at a time, and go on that way
+      // unless their runs are long enough to pay for running in lockstep
+      int sample = Math.min(to, from + SAMPLE);
+      long read = 0;
+      for (int i=from; i<sample; i++) {
+         CharSequence w = words[i];
+         int len = w.length();
+         long d = shiftAnd.start() & live;
+         int k = 0;
+         for (; k<len && d!=0; k++) d = shiftAnd.step(d, w.charAt(k)) & live;
+         read += k;
+         report(i, w, shiftAnd.isAccepting(d), bits, listener);
+      }
+      if (read < MIN_READ * (sample - from)) {
+         for (int i=sample; i<to; i++) {
+            report(i, words[i], shiftAnd.accepts(words[i]), bits, listener);
+         }
+         return;
+      }
+      from = sample;
+
+      // sort the rest by length
+      int maxLen = 0;
+      for (int i=from; i<to; i++) {
+         if (words[i].length() > maxLen) maxLen = words[i].length();
+      }
+      int[] count = new int[maxLen + 2];
+      for (int i=from; i<to; i++) count[words[i].length() + 1]++;
+      for (int l=1; l<count.length; l++) count[l] += count[l - 1];
+      int[] order = new int[to - from];
+      for (int i=from; i<to; i++) order[count[words[i].length()]++] = i;
+
+      Block b = new Block(alphabet.getNumClasses());
+      for (int k=0; k<order.length; k+=WIDTH) {
+         int m = Math.min(WIDTH, order.length - k);
+         for (int j=0; j<m; j++) {
+            b.word[j] = words[order[k + j]];
+            b.len[j] = b.word[j].length();
+         }
+         run(b, m);
+         for (int j=0; j<m; j++) {
+            int i = order[k + j];
+            boolean accepted = (b.result[j >> 6] >>> j & 1) != 0;
+            report(i, words[i], accepted, bits, listener);
+         }
+      }
+   }
+
+
+   // HELPER METHODS
+
+   /** sets the bit of the given word in the given result bitset if it is
+       accepted, or reports its result to the given listener if the bitset
+       is null */
+   private static void report(int i, CharSequence word, boolean accepted,
+      long[] bits, ResultListener listener)
+   {
+      if (bits != null) {
+         if (accepted) bits[i >> 6] |= 1L << i;
+      }
+      else listener.result(i, word, accepted);
+   }
+
+   /** runs the automaton over the first m words of the given block, which
+       are sorted by length */
+   private void run(Block b, int m) {
+      long[] cur = b.cur, next = b.next, alive = b.alive;
+      Arrays.fill(cur, 0);
+      Arrays.fill(b.result, 0);
+      for (int j=0; j<m; j++) cur[j >> 6] |= 1L << j;
+      System.arraycopy(cur, 0, alive, 0, LANES);
+
+      // words before index done have ended
+      int done = 0;
+      for (int t=0; ; t++) {
+         for (; done<m && b.len[done]==t; done++) {
+            long bit = 1L << done;
+            int g = done >> 6;
+            for (int a=0; a<accept.length; a++) {
+               if ((cur[accept[a] + g] & bit) != 0) {
+                  b.result[g] |= bit;
+                  break;
+               }
+            }
+            alive[g] &= ~bit;
+         }
+
+         // finish the few words still running one at a time
+         int running = 0;
+         for (int g=0; g<LANES; g++) running += Long.bitCount(alive[g]);
+         if (running < FEW) {
+            finish(b, cur, t);
+            return;
+         }
+         if (t % CHUNK == 0) fill(b, alive, t);
+
+         // mark the words reading a letter of each class
+         long[] c = b.classes;
+         for (int k=0; k<classes.length; k++) {
+            for (int g=0; g<LANES; g++) c[classes[k] + g] = 0;
+         }
+         int[] row = b.letters;
+         int r = (t % CHUNK) * WIDTH;
+         for (int j=done; j<m; j++) {
+            c[row[r + j] * LANES + (j >> 6)] |= 1L << j;
+         }
+
+         // advance every word one letter
+         LongVector any = LongVector.zero(SPECIES);
+         for (int k=0; k<targets.length; k++) {
+            LongVector v = LongVector.zero(SPECIES);
+            for (int e=predStart[k]; e<predStart[k + 1]; e++) {
+               v = v.or(LongVector.fromArray(SPECIES, cur, preds[e]));
+            }
+            v = v.and(LongVector.fromArray(SPECIES, c, targetClass[k]));
+            v.intoArray(next, targets[k]);
+            any = any.or(v);
+         }
+         for (int g=0; g<LANES; g++) next[g] = 0;
+         any.intoArray(alive, 0);
+         long[] s = cur;
+         cur = next;
+         next = s;
+      }
+   }
+
+   /** reads the classes of the next letters of the given running words
+       into the table of the given block, from the given round on; letters
+       past the end of a word are of class 0, which no position reads */
+   private void fill(Block b, long[] alive, int t) {
+      int[] row = b.letters;
+      for (int g=0; g<LANES; g++) {
+         long l = alive[g];
+         while (l != 0) {
+            int j = (g << 6) + Long.numberOfTrailingZeros(l);
+            l &= l - 1;
+            CharSequence w = b.word[j];
+            int n = Math.min(CHUNK, b.len[j] - t);
+            int u = 0;
+            for (; u<n; u++) {
+               row[u * WIDTH + j] = alphabet.classOf(w.charAt(t + u));
+            }
+            for (; u<CHUNK; u++) row[u * WIDTH + j] = 0;
+         }
+      }
+   }
+
+   /** finishes the runs of the given words still running, one at a time,
+       from the given round on */
+   private void finish(Block b, long[] cur, int t) {
+      for (int g=0; g<LANES; g++) {
+         long l = b.alive[g];
+         while (l != 0) {
+            int j = (g << 6) + Long.numberOfTrailingZeros(l);
+            l &= l - 1;
+            long d = 0;
+            for (int q=0; q<numPositions; q++) {
+               d |= (cur[q * LANES + g] >>> j & 1) << q;
+            }
+            if (shiftAnd.accepts(b.word[j], t, d)) {
+               b.result[g] |= 1L << j;
+            }
+         }
+      }
+   }
+
+
+   // HELPER CLASSES
+
+   /** the buffers of one block of words */
+   private class Block {
+
+      /** the words */
+      CharSequence[] word = new CharSequence[WIDTH];
+
+      /** the length of each word */
+      int[] len = new int[WIDTH];
+
+      /** the current and next position sets, as one vector of bits
+          per position */
+      long[] cur = new long[numPositions * LANES];
+      long[] next = new long[numPositions * LANES];
+
+      /** the words reading a letter of each class, as one vector of bits
+          per class */
+      long[] classes;
+
+      /** the classes of the next letters of each word, with one row of
+          WIDTH words per round */
+      int[] letters = new int[CHUNK * WIDTH];
+
+      /** the words still running */
+      long[] alive = new long[LANES];
+
+      /** the accepted words */
+      long[] result = new long[LANES];
+
+      /** constructs the buffers of a block for the given number of
+          letter classes */
+      Block(int numClasses) { classes = new long[numClasses * LANES]; }
+
+   }
+
+}
@@ -0,0 +1,106 @@
+// Alphabet.java
+
+import java.util.*;
+
+/** A partition of the characters into equivalence classes of letters that
+    behave identically in every state of an automaton, so that transition
+    tables can be indexed by class number instead of by character. Class 0
+    holds every character without any transitions. */
+public class Alphabet {
+
+   // STATE VARIABLES
+
+   /** class number of each of the 65536 characters */
+   private char[] classes;
+
+   /** a representative character of each class, or -1 for an empty class */
+   private int[] reps;
+
+
+   // CONSTRUCTORS
+
+   /** constructs an alphabet in which each of the given letters belongs to
+       the corresponding class (from 1 to numClasses - 1), and every other
+       character belongs to class 0 */
+   public Alphabet(char[] letters, int[] letterClasses, int numClasses) {
+      classes = new char[65536];
+      for (int i=0; i<letters.length; i++) {
+         classes[letters[i]] = (char) letterClasses[i];
+      }
+      findRepresentatives(numClasses);
+   }
+
+   /** constructs an alphabet from the given class of each character */
+   private Alphabet(char[] classes, int numClasses) {
+      this.classes = classes;
+      findRepresentatives(numClasses);
+   }
+
+
+   // FACTORY METHOD
+
+   /** returns the coarsest alphabet refining both given alphabets, in which
+       two characters share a class only if they share a class in each;
+       its class 0 holds the characters in class 0 of both */
+   public static Alphabet join(Alphabet a, Alphabet b) {
+      long nb = b.getNumClasses();
+      Hashtable ids = new Hashtable();
+      ids.put(new Long(0), new Integer(0));
+      char[] classes = new char[65536];
+      for (int c=0; c<65536; c++) {
+         Long key = new Long(a.classes[c] * nb + b.classes[c]);
+         Integer id = (Integer) ids.get(key);
+         if (id == null) {
+            id = new Integer(ids.size());
+            ids.put(key, id);
+         }
+         classes[c] = (char) id.intValue();
+      }
+      return new Alphabet(classes, ids.size());
+   }
+
+
+   // ACCESSORS
+
+   /** returns the class number of the given character */
+   public int classOf(char c) { return classes[c]; }
+
+   /** returns the number of classes */
+   public int getNumClasses() { return reps.length; }
+
+   /** returns a representative character of the given class,
+       or -1 if the class is empty */
+   public int getRepresentative(int cls) { return reps[cls]; }
+
+   /** tests whether every character of the given text from the given
+       index on is outside class 0 */
+   public boolean covers(CharSequence text, int from) {
+      int len = text.length();
+      for (int i=from; i<len; i++) {
+         if (classes[text.charAt(i)] == 0) return false;
+      }
+      return true;
+   }
+
+   /** returns the class in the given alphabet of each class of this one,
+       which should refine it; empty classes map to class 0 */
+   public int[] project(Alphabet coarser) {
+      int[] p = new int[reps.length];
+      for (int c=0; c<reps.length; c++) {
+         if (reps[c] >= 0) p[c] = coarser.classOf((char) reps[c]);
+      }
+      return p;
+   }
+
+
+   // HELPER METHODS
+
+   /** finds the lowest character of each class */
+   private void findRepresentatives(int numClasses) {
+      reps = new int[numClasses];
+      for (int i=0; i<numClasses; i++) reps[i] = -1;
+      for (int c=65535; c>=0; c--) reps[classes[c]] = c;
+   }
+
+}
+
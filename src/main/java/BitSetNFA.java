@@ -0,0 +1,443 @@
+// BitSetNFA.java
+
+import java.util.*;
+
+/** An immutable snapshot of a non-deterministic finite automaton, with each
+    set of current states stored as a bitset over dense state indices. The
+    letters are partitioned into classes of letters that behave identically
+    in every state, and the successors of every (state, letter class) pair
+    are precomputed as a bitset (already closed under epsilon transitions),
+    so that a computation step is a handful of OR operations and allocates
+    nothing. */
+public class BitSetNFA {
+
+   // STATE VARIABLES
+
+   /** the states of the automaton, in index order */
+   private State[] stateList;
+
+   /** mapping from each State to its Integer index */
+   private Hashtable index;
+
+   /** number of states */
+   private int numStates;
+
+   /** number of longs in each bitset */
+   private int words;
+
+   /** start state of the automaton */
+   private State start;
+
+   /** transition function from which this snapshot was built */
+   private TransitionFunction function;
+
+   /** version of the transition function when this snapshot was built */
+   private int version;
+
+   /** equivalence classes of the letters */
+   private Alphabet alphabet;
+
+   /** number of letter classes */
+   private int numClasses;
+
+   /** successor bitsets, one row of words longs for each
+       (state, letter class) pair */
+   private long[] succ;
+
+   /** bitset of accept states */
+   private long[] accept;
+
+   /** bitset of states active before any letters are read */
+   private long[] startSet;
+
+   /** bitset of states from which an accept state can be reached */
+   private long[] live;
+
+   /** bitset of accept states from which every word over the letters with
+       transitions leads to another such state */
+   private long[] universal;
+
+   /** whether any state is universal */
+   private boolean hasUniversal;
+
+
+   // CONSTRUCTORS
+
+   /** constructs a bitset snapshot of the automaton with the given
+       Vector of states, start state and transition function */
+   public BitSetNFA(Vector states, State start, TransitionFunction function) {
+      this(states, start, function, new EpsilonClosure(states, function));
+   }
+
+   /** constructs a bitset snapshot of the automaton with the given
+       Vector of states, start state and transition function, using the
+       given table of epsilon closures */
+   public BitSetNFA(Vector states, State start, TransitionFunction function,
+      EpsilonClosure epsilon)
+   {
+      this.start = start;
+      this.function = function;
+      version = function.getVersion();
+      numStates = states.size();
+      words = (numStates + 63) / 64;
+      stateList = new State[numStates];
+      index = new Hashtable();
+      accept = new long[words];
+      for (int i=0; i<numStates; i++) {
+         State s = (State) states.elementAt(i);
+         stateList[i] = s;
+         index.put(s, new Integer(i));
+         if (s.isAccept()) set(accept, i);
+      }
+
+      // collect the alphabet
+      Hashtable seen = new Hashtable();
+      Enumeration e = function.getDomain();
+      while (e.hasMoreElements()) {
+         TransitionTuple t = (TransitionTuple) e.nextElement();
+         char l = t.getLetter();
+         if (l == FiniteStateMachine.EPSILON) continue;
+         if (indexOf(t.getState()) < 0) continue;
+         Vector v = function.getTransitions(t);
+         if (v == null || v.size() == 0) continue;
+         seen.put(new Character(l), Boolean.TRUE);
+      }
+      char[] letters = new char[seen.size()];
+      e = seen.keys();
+      for (int i=0; i<letters.length; i++) {
+         letters[i] = ((Character) e.nextElement()).charValue();
+      }
+
+      // look up the epsilon closure of each state
+      long[][] closure = new long[numStates][];
+      for (int i=0; i<numStates; i++) closure[i] = epsilon.getClosure(i);
+      startSet = new long[words];
+      int st = indexOf(start);
+      if (st >= 0) System.arraycopy(closure[st], 0, startSet, 0, words);
+
+      // compute the epsilon-closed successors of each letter from every
+      // state; letters with the same successors form a class, and class 0
+      // holds the letters whose successors are all empty
+      int numLetters = letters.length;
+      int column = numStates * words;
+      Hashtable classes = new Hashtable();
+      Vector columns = new Vector();
+      long[] empty = new long[column];
+      classes.put(new StateSet(empty), new Integer(0));
+      columns.addElement(empty);
+      int[] letterClasses = new int[numLetters];
+      for (int l=0; l<numLetters; l++) {
+         long[] col = new long[column];
+         for (int i=0; i<numStates; i++) {
+            Vector next = function.getTransitions(
+               new TransitionTuple(stateList[i], letters[l]));
+            if (next == null) continue;
+            for (int k=0; k<next.size(); k++) {
+               TransitionTuple t = (TransitionTuple) next.elementAt(k);
+               int q = indexOf(t.getState());
+               if (q < 0) continue;
+               long[] c = closure[q];
+               for (int w=0; w<words; w++) col[i * words + w] |= c[w];
+            }
+         }
+         StateSet key = new StateSet(col);
+         Integer c = (Integer) classes.get(key);
+         if (c == null) {
+            c = new Integer(columns.size());
+            classes.put(key, c);
+            columns.addElement(col);
+         }
+         letterClasses[l] = c.intValue();
+      }
+      numClasses = columns.size();
+      alphabet = new Alphabet(letters, letterClasses, numClasses);
+
+      // store the successors of each (state, class) pair
+      succ = new long[numStates * numClasses * words];
+      for (int c=1; c<numClasses; c++) {
+         long[] col = (long[]) columns.elementAt(c);
+         for (int i=0; i<numStates; i++) {
+            System.arraycopy(col, i * words,
+               succ, (i * numClasses + c) * words, words);
+         }
+      }
+      findSinks();
+   }
+
+
+   // SIMULATION
+
+   /** allocates an empty bitset large enough to hold a set of states */
+   public long[] newSet() { return new long[words]; }
+
+   /** fills the given bitset with the states that are current
+       before any letters are read */
+   public void start(long[] set) {
+      System.arraycopy(startSet, 0, set, 0, words);
+   }
+
+   /** computes into next the set of states reachable from the states of cur
+       by reading the given letter; returns false if no state of next can
+       still reach an accept state */
+   public boolean step(long[] cur, char l, long[] next) {
+      return stepClass(cur, alphabet.classOf(l), next);
+   }
+
+   /** computes into next the set of states reachable from the states of cur
+       by reading a letter of the given class; returns false if no state of
+       next can still reach an accept state */
+   public boolean stepClass(long[] cur, int c, long[] next) {
+      for (int w=0; w<words; w++) next[w] = 0;
+      if (c == 0) return false;
+      int stride = numClasses * words;
+      boolean alive = false;
+      for (int w=0; w<words; w++) {
+         long bits = cur[w];
+         while (bits != 0) {
+            int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+            int row = i * stride + c * words;
+            for (int v=0; v<words; v++) {
+               long x = succ[row + v];
+               next[v] |= x;
+               if ((x & live[v]) != 0) alive = true;
+            }
+         }
+      }
+      return alive;
+   }
+
+   /** stores into the given array the indices of the states reachable from
+       the given state by reading a letter of the given class,
+       returning their number */
+   public int successors(int state, int c, int[] out) {
+      int row = (state * numClasses + c) * words;
+      int n = 0;
+      for (int w=0; w<words; w++) {
+         long bits = succ[row + w];
+         while (bits != 0) {
+            out[n++] = (w << 6) + Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+         }
+      }
+      return n;
+   }
+
+   /** tests whether the second given state is reachable from the first
+       by reading a letter of the given class */
+   public boolean isSuccessor(int state, int c, int next) {
+      int row = (state * numClasses + c) * words;
+      return (succ[row + (next >> 6)] & (1L << next)) != 0;
+   }
+
+   /** tests whether the given set of states includes an accept state */
+   public boolean isAccepting(long[] set) {
+      for (int w=0; w<words; w++) {
+         if ((set[w] & accept[w]) != 0) return true;
+      }
+      return false;
+   }
+
+   /** tests whether the given set of states has no state
+       from which an accept state can be reached */
+   public boolean isDead(long[] set) {
+      for (int w=0; w<words; w++) {
+         if ((set[w] & live[w]) != 0) return false;
+      }
+      return true;
+   }
+
+   /** tests whether the given set of states includes a universal state,
+       so that it accepts every remaining word in which every letter has
+       transitions (see Alphabet.covers) */
+   public boolean isUniversal(long[] set) {
+      if (!hasUniversal) return false;
+      for (int w=0; w<words; w++) {
+         if ((set[w] & universal[w]) != 0) return true;
+      }
+      return false;
+   }
+
+   /** runs this automaton over the given word, returning whether it
+       accepts; each call allocates only a pair of state bitsets, and the
+       computation stops as soon as its outcome no longer depends on the
+       letters left to read */
+   public boolean accepts(CharSequence word) {
+      return accepts(word, newSet(), newSet());
+   }
+
+   /** runs this automaton over the given word as accepts(word) does, using
+       the two given bitsets as scratch space, so that a caller running many
+       words can allocate them once */
+   public boolean accepts(CharSequence word, long[] cur, long[] next) {
+      start(cur);
+      if (isDead(cur)) return false;
+      int len = word.length();
+      for (int i=0; i<len; i++) {
+         if (isUniversal(cur)) return alphabet.covers(word, i);
+         if (!step(cur, word.charAt(i), next)) return false;
+         long[] t = cur;
+         cur = next;
+         next = t;
+      }
+      return isAccepting(cur);
+   }
+
+
+   // ACCESSORS
+
+   /** returns the number of states */
+   public int getNumStates() { return numStates; }
+
+   /** returns the number of longs in each state bitset */
+   public int getWords() { return words; }
+
+   /** returns the state with the given index */
+   public State getState(int i) { return stateList[i]; }
+
+   /** returns the index of the given state, or -1 if it is not a state
+       of this automaton */
+   public int indexOf(State s) {
+      Integer i = (Integer) index.get(s);
+      return i == null ? -1 : i.intValue();
+   }
+
+   /** returns the equivalence classes of the letters */
+   public Alphabet getAlphabet() { return alphabet; }
+
+   /** tests whether the given state is an accept state */
+   public boolean isAccept(int i) { return contains(accept, i); }
+
+   /** tests whether an accept state can be reached from the given state */
+   public boolean isLive(int i) { return contains(live, i); }
+
+   /** tests whether the given state is universal: an accept state from
+       which every word over the letters with transitions is accepted */
+   public boolean isUniversal(int i) { return contains(universal, i); }
+
+   /** tests whether this snapshot still matches the given Vector of states,
+       start state and transition function */
+   public boolean isUpToDate(Vector states, State start,
+      TransitionFunction function)
+   {
+      if (this.function != function || version != function.getVersion() ||
+         this.start != start || numStates != states.size())
+      {
+         return false;
+      }
+      for (int i=0; i<numStates; i++) {
+         State s = (State) states.elementAt(i);
+         if (s != stateList[i] || s.isAccept() != isAccept(i)) return false;
+      }
+      return true;
+   }
+
+
+   // HELPER METHODS
+
+   /** finds the live and universal states, walking the transitions
+       backwards from each state that changes status */
+   private void findSinks() {
+      // predecessors of each (state, class) pair
+      long[] pred = new long[succ.length];
+      int[] count = new int[numStates * numClasses];
+      for (int i=0; i<numStates; i++) {
+         for (int c=1; c<numClasses; c++) {
+            int row = (i * numClasses + c) * words;
+            for (int w=0; w<words; w++) {
+               long bits = succ[row + w];
+               while (bits != 0) {
+                  int j = (w << 6) + Long.numberOfTrailingZeros(bits);
+                  bits &= bits - 1;
+                  pred[(j * numClasses + c) * words + (i >> 6)] |= 1L << i;
+               }
+            }
+         }
+      }
+      int[] stack = new int[numStates];
+      int top = 0;
+
+      // the live states are those with a path to an accept state
+      live = new long[words];
+      for (int i=0; i<numStates; i++) {
+         if (isAccept(i)) {
+            set(live, i);
+            stack[top++] = i;
+         }
+      }
+      while (top > 0) {
+         int j = stack[--top];
+         for (int c=1; c<numClasses; c++) {
+            int row = (j * numClasses + c) * words;
+            for (int w=0; w<words; w++) {
+               long bits = pred[row + w] & ~live[w];
+               live[w] |= bits;
+               while (bits != 0) {
+                  stack[top++] = (w << 6) + Long.numberOfTrailingZeros(bits);
+                  bits &= bits - 1;
+               }
+            }
+         }
+      }
+
+      // the universal states are the largest set of accept states each
+      // with a successor in the set on every class; start from all accept
+      // states and drop those left without such a successor
+      universal = new long[words];
+      System.arraycopy(accept, 0, universal, 0, words);
+      for (int i=0; i<numStates; i++) {
+         if (!isAccept(i)) continue;
+         for (int c=1; c<numClasses; c++) {
+            int row = (i * numClasses + c) * words;
+            int n = 0;
+            for (int w=0; w<words; w++) {
+               n += Long.bitCount(succ[row + w] & accept[w]);
+            }
+            count[i * numClasses + c] = n;
+            if (n == 0 && contains(universal, i)) {
+               universal[i >> 6] &= ~(1L << i);
+               stack[top++] = i;
+            }
+         }
+      }
+      while (top > 0) {
+         int j = stack[--top];
+         for (int c=1; c<numClasses; c++) {
+            int row = (j * numClasses + c) * words;
+            for (int w=0; w<words; w++) {
+               long bits = pred[row + w] & universal[w];
+               while (bits != 0) {
+                  int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                  bits &= bits - 1;
+                  if (--count[i * numClasses + c] == 0) {
+                     universal[w] &= ~(1L << i);
+                     stack[top++] = i;
+                  }
+               }
+            }
+         }
+      }
+      hasUniversal = !isEmpty(universal);
+   }
+
+
+   // BITSET UTILITY METHODS
+
+   /** tests whether the given bitset contains the given index */
+   public static boolean contains(long[] set, int i) {
+      return (set[i >> 6] & (1L << i)) != 0;
+   }
+
+   /** adds the given index to the given bitset */
+   public static void set(long[] set, int i) { set[i >> 6] |= 1L << i; }
+
+   /** tests whether the given bitset is empty */
+   public static boolean isEmpty(long[] set) {
+      for (int w=0; w<set.length; w++) {
+         if (set[w] != 0) return false;
+      }
+      return true;
+   }
+
+}
+
@@ -0,0 +1,213 @@
+// BulkClassifier.java
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/** Classifies large batches of words against a compiled automaton in
+    parallel, splitting each batch recursively across a ForkJoinPool. Since
+    the compiled automaton is immutable, the workers share it without any
+    locking, and each worker writes its results to its own range of the
+    result bitset. Automata too large to determinize can be run instead
+    as a BitSetNFA snapshot, one word at a time with state bitsets
+    allocated once per task, or with a single long per word when the
+    automaton is small enough for a ShiftAndNFA.
+
+    When the JVM runs with the jdk.incubator.vector module (Java 16 or
+    later, with --add-modules jdk.incubator.vector), such small automata
+    are run instead by the VectorLockstep engine, which advances hundreds
+    of words at once in SIMD lanes. It is compiled from its own source
+    root and loaded reflectively, so that this class still runs without
+    it. */
+public class BulkClassifier {
+
+   // CONSTANTS
+
+   /** number of words below which a batch is no longer split;
+       a multiple of 64, so that each task owns whole longs of the result */
+   private static final int GRAIN = 64 * 64;
+
+
+   // STATE VARIABLES
+
+   /** the compiled automaton, or null to use the NFA snapshot */
+   private CompiledDFA dfa;
+
+   /** the NFA snapshot, or null to use the compiled automaton */
+   private BitSetNFA nfa;
+
+   /** bit-parallel version of the NFA snapshot, or null */
+   private ShiftAndNFA shiftAnd;
+
+   /** engine running the bit-parallel version over many words at once,
+       or null */
+   private Lockstep lockstep;
+
+   /** the pool in which batches are classified */
+   private ForkJoinPool pool;
+
+
+   // CONSTRUCTORS
+
+   /** constructs a classifier for a snapshot of the given finite automaton,
+       using the common ForkJoinPool */
+   public BulkClassifier(FiniteAutomaton fa) { this(new CompiledDFA(fa)); }
+
+   /** constructs a classifier for the given compiled automaton,
+       using the common ForkJoinPool */
+   public BulkClassifier(CompiledDFA dfa) {
+      this(dfa, ForkJoinPool.commonPool());
+   }
+
+   /** constructs a classifier for the given compiled automaton,
+       using the given ForkJoinPool */
+   public BulkClassifier(CompiledDFA dfa, ForkJoinPool pool) {
+      this.dfa = dfa;
+      this.pool = pool;
+   }
+
+   /** constructs a classifier running the given automaton snapshot
+       without determinizing it, using the common ForkJoinPool */
+   public BulkClassifier(BitSetNFA nfa) {
+      this(nfa, ForkJoinPool.commonPool());
+   }
+
+   /** constructs a classifier running the given automaton snapshot
+       without determinizing it, using the given ForkJoinPool */
+   public BulkClassifier(BitSetNFA nfa, ForkJoinPool pool) {
+      this.nfa = nfa;
+      this.pool = pool;
+      shiftAnd = ShiftAndNFA.create(nfa);
+      if (shiftAnd != null) lockstep = loadLockstep(shiftAnd);
+   }
+
+
+   // CLASSIFICATION
+
+   /** classifies the given words, returning a bitset with
+       the indices of the accepted words set */
+   public BitSet classify(CharSequence[] words) {
+      long[] bits = new long[(words.length + 63) / 64];
+      pool.invoke(new Task(words, 0, words.length, bits, null));
+      return BitSet.valueOf(bits);
+   }
+
+   /** classifies the words of the given collection in iteration order,
+       returning a bitset with the indices of the accepted words set */
+   public BitSet classify(Collection words) {
+      return classify((CharSequence[])
+         words.toArray(new CharSequence[words.size()]));
+   }
+
+   /** classifies the given words, reporting each
+       result to the given listener */
+   public void classify(CharSequence[] words, ResultListener listener) {
+      pool.invoke(new Task(words, 0, words.length, null, listener));
+   }
+
+
+   // ACCESSORS
+
+   /** returns the compiled automaton, or null if this classifier
+       runs an NFA snapshot */
+   public CompiledDFA getDFA() { return dfa; }
+
+   /** returns the NFA snapshot, or null if this classifier
+       runs a compiled automaton */
+   public BitSetNFA getNFA() { return nfa; }
+
+   /** tests whether this classifier runs many words at once
+       on the Vector API engine */
+   public boolean isLockstep() { return lockstep != null; }
+
+
+   // HELPER METHODS
+
+   /** returns the Vector API engine running the given automaton, or null
+       if it is not available in this JVM */
+   private static Lockstep loadLockstep(ShiftAndNFA shiftAnd) {
+      try {
+         Class c = Class.forName("VectorLockstep");
+         return (Lockstep) c.getConstructor(new Class[] {ShiftAndNFA.class})
+            .newInstance(new Object[] {shiftAnd});
+      }
+      catch (LinkageError err) {
+         // the JVM is too old or lacks the jdk.incubator.vector module
+      }
+      catch (Exception exc) {
+         // the engine was not compiled
+      }
+      return null;
+   }
+
+
+   // HELPER CLASSES
+
+   /** an engine classifying a range of words at once */
+   interface Lockstep {
+
+      /** classifies the given range of words, setting the bits of the
+          accepted ones in the given result bitset, or reporting each
+          result to the given listener if the bitset is null */
+      void classify(CharSequence[] words, int from, int to, long[] bits,
+         ResultListener listener);
+
+   }
+
+   /** a task classifying a range of a batch of words */
+   private class Task extends RecursiveAction {
+
+      /** the batch of words */
+      private CharSequence[] words;
+
+      /** range of the batch to classify */
+      private int from, to;
+
+      /** result bitset, or null to report to the listener */
+      private long[] bits;
+
+      /** listener receiving the results, or null */
+      private ResultListener listener;
+
+      /** constructs a task classifying the given range of words */
+      Task(CharSequence[] words, int from, int to, long[] bits,
+         ResultListener listener)
+      {
+         this.words = words;
+         this.from = from;
+         this.to = to;
+         this.bits = bits;
+         this.listener = listener;
+      }
+
+      /** classifies the range, splitting it if it is too large */
+      protected void compute() {
+         if (to - from > GRAIN) {
+            int mid = from + (to - from) / 2 / 64 * 64;
+            invokeAll(new Task(words, from, mid, bits, listener),
+               new Task(words, mid, to, bits, listener));
+            return;
+         }
+         if (lockstep != null) {
+            lockstep.classify(words, from, to, bits, listener);
+            return;
+         }
+         long[] cur = null, next = null;
+         if (dfa == null && shiftAnd == null) {
+            cur = nfa.newSet();
+            next = nfa.newSet();
+         }
+         for (int i=from; i<to; i++) {
+            boolean accepted = dfa != null ? dfa.accepts(words[i]) :
+               shiftAnd != null ? shiftAnd.accepts(words[i]) :
+               nfa.accepts(words[i], cur, next);
+            if (bits != null) {
+               if (accepted) bits[i >> 6] |= 1L << i;
+            }
+            else listener.result(i, words[i], accepted);
+         }
+      }
+
+   }
+
+}
+
@@ -0,0 +1,329 @@
+// CompiledDFA.java
+
+import java.util.*;
+
+/** An immutable, minimized deterministic automaton compiled from a
+    non-deterministic one, with its transitions stored in a flat int table
+    indexed by (state, letter class), so that reading a letter is one
+    array load for its class and one for the transition. Because it is
+    immutable, one compiled automaton can be built at startup and shared by
+    any number of threads. */
+public class CompiledDFA {
+
+   // CONSTANTS
+
+   /** sink status of a state from which no accept state can be reached */
+   private static final byte DEAD = 1;
+
+   /** sink status of an accept state from which every word over the
+       letters with transitions is accepted */
+   private static final byte UNIVERSAL = 2;
+
+
+   // STATE VARIABLES
+
+   /** equivalence classes of the letters */
+   private final Alphabet alphabet;
+
+   /** number of letter classes */
+   private final int cols;
+
+   /** number of states */
+   private final int numStates;
+
+   /** start state */
+   private final int start;
+
+   /** transition table, with one row of cols entries per state */
+   private final int[] table;
+
+   /** bitset of accept states */
+   private final long[] accept;
+
+   /** sink status of each state (DEAD, UNIVERSAL or 0) */
+   private final byte[] sink;
+
+
+   // CONSTRUCTORS
+
+   /** compiles the given finite automaton */
+   public CompiledDFA(FiniteAutomaton fa) { this(fa.getNFA()); }
+
+   /** compiles the automaton of the given bitset snapshot, using the subset
+       construction followed by Hopcroft's minimization algorithm */
+   public CompiledDFA(BitSetNFA nfa) {
+      alphabet = nfa.getAlphabet();
+      cols = alphabet.getNumClasses();
+
+      // subset construction, over the reachable sets of NFA states only
+      Hashtable ids = new Hashtable();
+      Vector subsets = new Vector();
+      int[] t = new int[16 * cols];
+      long[] set = nfa.newSet();
+      nfa.start(set);
+      StateSet s0 = new StateSet(set);
+      ids.put(s0, new Integer(0));
+      subsets.addElement(s0);
+      for (int i=0; i<subsets.size(); i++) {
+         long[] cur = ((StateSet) subsets.elementAt(i)).getBits();
+         if (t.length < (i + 1) * cols) {
+            int[] nt = new int[2 * t.length];
+            System.arraycopy(t, 0, nt, 0, t.length);
+            t = nt;
+         }
+         for (int c=0; c<cols; c++) {
+            nfa.stepClass(cur, c, set);
+            StateSet next = new StateSet(set);
+            Integer id = (Integer) ids.get(next);
+            if (id == null) {
+               id = new Integer(subsets.size());
+               ids.put(next, id);
+               subsets.addElement(next);
+            }
+            t[i * cols + c] = id.intValue();
+         }
+      }
+      int n = subsets.size();
+      boolean[] acc = new boolean[n];
+      for (int i=0; i<n; i++) {
+         acc[i] = nfa.isAccepting(((StateSet) subsets.elementAt(i)).getBits());
+      }
+
+      // minimize, then renumber the blocks as the new states
+      int[] blk = minimize(t, n, cols, acc);
+      int m = 0;
+      for (int i=0; i<n; i++) if (blk[i] >= m) m = blk[i] + 1;
+      numStates = m;
+      start = blk[0];
+      table = new int[m * cols];
+      accept = new long[(m + 63) / 64];
+      for (int i=0; i<n; i++) {
+         int b = blk[i];
+         for (int c=0; c<cols; c++) table[b * cols + c] = blk[t[i * cols + c]];
+         if (acc[i]) BitSetNFA.set(accept, b);
+      }
+      sink = findSinks();
+   }
+
+
+   // SIMULATION
+
+   /** returns the start state */
+   public int getStart() { return start; }
+
+   /** returns the state reached from the given state
+       by reading the given letter */
+   public int next(int state, char l) {
+      return table[state * cols + alphabet.classOf(l)];
+   }
+
+   /** returns the state reached from the given state
+       by reading a letter of the given class */
+   public int nextClass(int state, int c) { return table[state * cols + c]; }
+
+   /** tests whether the given state is an accept state */
+   public boolean isAccept(int state) {
+      return BitSetNFA.contains(accept, state);
+   }
+
+   /** tests whether no accept state can be reached from the given state */
+   public boolean isDead(int state) { return sink[state] == DEAD; }
+
+   /** tests whether the given state is universal: an accept state from
+       which every word over the letters with transitions is accepted */
+   public boolean isUniversal(int state) { return sink[state] == UNIVERSAL; }
+
+   /** runs this automaton over the given word, returning whether it
+       accepts; the run stops as soon as it reaches a dead or universal
+       state */
+   public boolean accepts(CharSequence word) {
+      int s = start;
+      int len = word.length();
+      for (int i=0; i<len; i++) {
+         int k = sink[s];
+         if (k != 0) return k == UNIVERSAL && alphabet.covers(word, i);
+         s = table[s * cols + alphabet.classOf(word.charAt(i))];
+      }
+      return BitSetNFA.contains(accept, s);
+   }
+
+
+   // ACCESSORS
+
+   /** returns the number of states */
+   public int getNumStates() { return numStates; }
+
+   /** returns the equivalence classes of the letters */
+   public Alphabet getAlphabet() { return alphabet; }
+
+
+   // HELPER METHODS
+
+   /** finds the sink status of each state, walking the transitions
+       backwards from each state that changes status */
+   private byte[] findSinks() {
+      // predecessors of each state, in compressed rows
+      int[] first = new int[numStates + 1];
+      for (int e=0; e<table.length; e++) first[table[e] + 1]++;
+      for (int i=0; i<numStates; i++) first[i+1] += first[i];
+      int[] pos = new int[numStates];
+      System.arraycopy(first, 0, pos, 0, numStates);
+      int[] pred = new int[table.length];
+      for (int e=0; e<table.length; e++) pred[pos[table[e]]++] = e;
+
+      // every state that cannot reach an accept state is dead
+      boolean[] live = new boolean[numStates];
+      int[] stack = new int[numStates];
+      int top = 0;
+      for (int i=0; i<numStates; i++) {
+         if (isAccept(i)) {
+            live[i] = true;
+            stack[top++] = i;
+         }
+      }
+      while (top > 0) {
+         int j = stack[--top];
+         for (int k=first[j]; k<first[j+1]; k++) {
+            int p = pred[k] / cols;
+            if (!live[p]) {
+               live[p] = true;
+               stack[top++] = p;
+            }
+         }
+      }
+
+      // the universal states are the largest set of accept states whose
+      // letters with transitions all lead back into the set
+      boolean[] universal = new boolean[numStates];
+      for (int i=0; i<numStates; i++) {
+         universal[i] = isAccept(i);
+         for (int c=1; c<cols && universal[i]; c++) {
+            universal[i] = isAccept(table[i * cols + c]);
+         }
+         if (isAccept(i) && !universal[i]) stack[top++] = i;
+      }
+      while (top > 0) {
+         int j = stack[--top];
+         for (int k=first[j]; k<first[j+1]; k++) {
+            int p = pred[k] / cols;
+            if (pred[k] % cols != 0 && universal[p]) {
+               universal[p] = false;
+               stack[top++] = p;
+            }
+         }
+      }
+
+      byte[] sink = new byte[numStates];
+      for (int i=0; i<numStates; i++) {
+         if (!live[i]) sink[i] = DEAD;
+         else if (universal[i]) sink[i] = UNIVERSAL;
+      }
+      return sink;
+   }
+
+   /** partitions the n states of the given transition table into blocks of
+       equivalent states with Hopcroft's algorithm, returning the block
+       number of each state */
+   private static int[] minimize(int[] t, int n, int cols, boolean[] acc) {
+      // predecessors of each (state, column), in compressed rows
+      int[] predStart = new int[n * cols + 1];
+      for (int i=0; i<n * cols; i++) {
+         predStart[t[i] * cols + i % cols + 1]++;
+      }
+      for (int i=0; i<n * cols; i++) predStart[i + 1] += predStart[i];
+      int[] preds = new int[n * cols];
+      int[] fill = new int[n * cols];
+      for (int i=0; i<n * cols; i++) {
+         int e = t[i] * cols + i % cols;
+         preds[predStart[e] + fill[e]++] = i / cols;
+      }
+
+      // refinable partition: each block is a range of elems, with its
+      // marked elements moved to the front of the range
+      int[] elems = new int[n];
+      int[] loc = new int[n];
+      int[] blk = new int[n];
+      int[] first = new int[n];
+      int[] end = new int[n];
+      int[] mid = new int[n];
+      int k = 0;
+      for (int i=0; i<n; i++) if (acc[i]) elems[k++] = i;
+      int numAcc = k;
+      for (int i=0; i<n; i++) if (!acc[i]) elems[k++] = i;
+      int numBlocks = 0;
+      if (numAcc > 0) {
+         first[0] = mid[0] = 0;
+         end[0] = numAcc;
+         numBlocks++;
+      }
+      if (numAcc < n) {
+         first[numBlocks] = mid[numBlocks] = numAcc;
+         end[numBlocks] = n;
+         numBlocks++;
+      }
+      for (int i=0; i<n; i++) {
+         loc[elems[i]] = i;
+         blk[elems[i]] = acc[elems[i]] || numAcc == 0 ? 0 : numBlocks - 1;
+      }
+
+      // worklist of (block, column) splitters
+      int[] work = new int[n * cols];
+      int wp = 0;
+      for (int c=0; c<cols; c++) work[wp++] = c;
+      int[] splitter = new int[n];
+      int[] touched = new int[n];
+      while (wp > 0) {
+         int w = work[--wp];
+         int b = w / cols, c = w % cols;
+
+         // mark every predecessor of the splitter block on column c
+         int size = end[b] - first[b];
+         System.arraycopy(elems, first[b], splitter, 0, size);
+         int nt = 0;
+         for (int j=0; j<size; j++) {
+            int e = splitter[j] * cols + c;
+            for (int p=predStart[e]; p<predStart[e + 1]; p++) {
+               int x = preds[p];
+               int y = blk[x];
+               if (loc[x] < mid[y]) continue;
+               if (mid[y] == first[y]) touched[nt++] = y;
+               int z = elems[mid[y]];
+               elems[loc[x]] = z;
+               loc[z] = loc[x];
+               elems[mid[y]] = x;
+               loc[x] = mid[y]++;
+            }
+         }
+
+         // split each touched block into its marked and unmarked parts
+         for (int j=0; j<nt; j++) {
+            int y = touched[j];
+            if (mid[y] == end[y]) {
+               mid[y] = first[y];
+               continue;
+            }
+            int nb = numBlocks++;
+            if (mid[y] - first[y] <= end[y] - mid[y]) {
+               first[nb] = first[y];
+               end[nb] = mid[y];
+               first[y] = mid[y];
+            }
+            else {
+               first[nb] = mid[y];
+               end[nb] = end[y];
+               end[y] = mid[y];
+            }
+            mid[y] = first[y];
+            mid[nb] = first[nb];
+            for (int p=first[nb]; p<end[nb]; p++) blk[elems[p]] = nb;
+
+            // the new block is the smaller half, so it is always enough
+            // to add it as a splitter
+            for (int d=0; d<cols; d++) work[wp++] = nb * cols + d;
+         }
+      }
+      return blk;
+   }
+
+}
+
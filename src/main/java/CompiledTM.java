@@ -0,0 +1,160 @@
+// CompiledTM.java
+
+import java.util.*;
+
+/** An immutable snapshot of a Turing machine compiled for fast headless
+    runs. The states are numbered densely and the tape symbols are
+    partitioned by an Alphabet, class 0 holding the symbols without any
+    transitions, so that the move made in each state on each symbol class
+    is one entry of a flat table. Each entry packs the destination state,
+    the direction and the symbol written into a single long, or is -1 if
+    the machine has no transition there. */
+public class CompiledTM {
+
+   // CONSTANTS
+
+   /** bit of a packed move set if the head moves right */
+   public static final long RIGHT = 1L << 16;
+
+
+   // STATE VARIABLES
+
+   /** the states of the machine, in index order */
+   private State[] stateList;
+
+   /** mapping from each State to its Integer index */
+   private Hashtable index;
+
+   /** number of states */
+   private int numStates;
+
+   /** start, accept and reject states of the machine */
+   private State start, accept, reject;
+
+   /** transition function from which this snapshot was built */
+   private TransitionFunction function;
+
+   /** version of the transition function when this snapshot was built */
+   private int version;
+
+   /** classes of the tape symbols */
+   private Alphabet alphabet;
+
+   /** number of symbol classes */
+   private int numClasses;
+
+   /** packed move made in each state on each symbol class, or -1 */
+   private long[] table;
+
+
+   // CONSTRUCTOR
+
+   /** constructs a snapshot of the Turing machine with the given Vector of
+       states, start, accept and reject states, and transition function */
+   public CompiledTM(Vector states, State start, State accept, State reject,
+      TransitionFunction function)
+   {
+      this.start = start;
+      this.accept = accept;
+      this.reject = reject;
+      this.function = function;
+      version = function.getVersion();
+      numStates = states.size();
+      stateList = new State[numStates];
+      index = new Hashtable();
+      for (int i=0; i<numStates; i++) {
+         State s = (State) states.elementAt(i);
+         stateList[i] = s;
+         index.put(s, new Integer(i));
+      }
+
+      // give each symbol read by a transition a class of its own
+      Vector from = new Vector();
+      Hashtable seen = new Hashtable();
+      Enumeration e = function.getDomain();
+      while (e.hasMoreElements()) {
+         TransitionTuple t = (TransitionTuple) e.nextElement();
+         if (indexOf(t.getState()) < 0) continue;
+         if (function.getTransition(t) == null) continue;
+         from.addElement(t);
+         Character c = new Character(t.getLetter());
+         if (seen.get(c) == null) seen.put(c, new Integer(seen.size() + 1));
+      }
+      char[] symbols = new char[seen.size()];
+      int[] classes = new int[symbols.length];
+      e = seen.keys();
+      for (int i=0; i<symbols.length; i++) {
+         Character c = (Character) e.nextElement();
+         symbols[i] = c.charValue();
+         classes[i] = ((Integer) seen.get(c)).intValue();
+      }
+      numClasses = symbols.length + 1;
+      alphabet = new Alphabet(symbols, classes, numClasses);
+
+      // pack the moves
+      table = new long[numStates * numClasses];
+      Arrays.fill(table, -1);
+      for (int i=0; i<from.size(); i++) {
+         TransitionTuple t = (TransitionTuple) from.elementAt(i);
+         TransitionTuple next = function.getTransition(t);
+         int q = indexOf(next.getState());
+         if (q < 0) continue;
+         int p = indexOf(t.getState());
+         int c = alphabet.classOf(t.getLetter());
+         table[p * numClasses + c] = ((long) q << 32) |
+            (next.getDirection() ? RIGHT : 0) | next.getSymbol();
+      }
+   }
+
+
+   // SIMULATION
+
+   /** returns the packed move made in the given state on the given
+       symbol, or -1 if there is none */
+   public long next(int state, char symbol) {
+      return table[state * numClasses + alphabet.classOf(symbol)];
+   }
+
+
+   // ACCESSORS
+
+   /** returns the number of states */
+   public int getNumStates() { return numStates; }
+
+   /** returns the state with the given index */
+   public State getState(int i) { return stateList[i]; }
+
+   /** returns the index of the given state, or -1 if it is not a state of
+       this snapshot */
+   public int indexOf(State s) {
+      Integer i = (Integer) index.get(s);
+      return i == null ? -1 : i.intValue();
+   }
+
+   /** returns the index of the start state, or -1 */
+   public int getStart() { return indexOf(start); }
+
+   /** returns the index of the accept state, or -1 */
+   public int getAccept() { return indexOf(accept); }
+
+   /** returns the index of the reject state, or -1 */
+   public int getReject() { return indexOf(reject); }
+
+   /** tests whether this snapshot still matches the Turing machine with the
+       given Vector of states, start state and transition function */
+   public boolean isUpToDate(Vector states, State start,
+      TransitionFunction function)
+   {
+      if (this.function != function || version != function.getVersion() ||
+         this.start != start || numStates != states.size())
+      {
+         return false;
+      }
+      for (int i=0; i<numStates; i++) {
+         if (states.elementAt(i) != stateList[i]) return false;
+      }
+      return true;
+   }
+
+}
+
@@ -0,0 +1,55 @@
+// Configuration.java
+
+/** A configuration of a pushdown automaton computation: a state index and
+    a node of a graph-structured stack, standing for that state with any of
+    the stacks of the node. Since a computation merges the configurations
+    of each step that have the same state and the same top symbol, two
+    configurations of a step are equal exactly when they have the same
+    state and the same top symbol, or both have an empty stack. */
+public class Configuration {
+
+   // STATE VARIABLES
+
+   /** the state index */
+   private int state;
+
+   /** the stack */
+   private SharedStack stack;
+
+
+   // CONSTRUCTOR
+
+   /** constructs a configuration with the given state index and stack */
+   public Configuration(int state, SharedStack stack) {
+      this.state = state;
+      this.stack = stack;
+   }
+
+
+   // ACCESSORS
+
+   /** returns the state index */
+   public int getState() { return state; }
+
+   /** returns the stack */
+   public SharedStack getStack() { return stack; }
+
+
+   // HASHTABLE-RELATED METHODS
+
+   /** returns a hash code for this configuration */
+   public int hashCode() {
+      return 31 * (stack.isEmpty() ? -1 : stack.peek()) + state;
+   }
+
+   /** tests whether two configurations are equal */
+   public boolean equals(Object o) {
+      if (!(o instanceof Configuration)) return false;
+      Configuration c = (Configuration) o;
+      if (state != c.state || stack.isEmpty() != c.stack.isEmpty()) {
+         return false;
+      }
+      return stack.isEmpty() || stack.peek() == c.stack.peek();
+   }
+
+}
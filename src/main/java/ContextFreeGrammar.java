@@ -0,0 +1,433 @@
+// ContextFreeGrammar.java
+
+import java.util.*;
+
+/** A context-free grammar generating the language of a pushdown automaton
+    snapshot. Moves that both pop and push are first split in two through
+    an extra state, so that every move pops, pushes or does neither; then
+    the grammar has three kinds of nonterminals:
+
+    A[p,q] generates the words leading from state p to state q with the
+    stack back where it started and never below it;
+    C[p,t] generates the words leading from p to t by a push, a word of
+    some A, and a pop of the symbol pushed;
+    U[p] generates the words leading from p to an accept state without
+    ever popping below the starting stack.
+
+    The start symbol is U of the start state. Only nonterminals that
+    generate some word and can be reached from the start symbol are kept,
+    and their rules are built as they are reached, so an automaton with
+    many states pays only for the part of the grammar it needs.
+
+    Symbols are numbered: nonterminals from 0, and each letter c as the
+    negative number -1 - c. The rules are stored end to end in one array,
+    each followed by END, so that a position in that array is a dotted
+    rule, as used by EarleyParser. */
+public class ContextFreeGrammar {
+
+   // CONSTANTS
+
+   /** symbol marking the end of each rule */
+   public static final int END = Integer.MIN_VALUE;
+
+
+   // STATE VARIABLES
+
+   /** number of nonterminals */
+   private int numNonterminals;
+
+   /** number of rules */
+   private int numRules;
+
+   /** symbols of all rules, each rule followed by END */
+   private int[] symbols;
+
+   /** left-hand side of the rule containing each position of symbols */
+   private int[] lhs;
+
+   /** positions of the rules of each nonterminal */
+   private int[][] rules;
+
+   /** whether each nonterminal generates the empty word */
+   private boolean[] nullable;
+
+   /** the automaton */
+   private SharedStackPDA pda;
+
+   /** number of states while the grammar is built, including the extra
+       states of split moves */
+   private int n;
+
+   /** source, letter (or EPSILON) and destination of each move
+       that neither pops nor pushes */
+   private int[] nopFrom, nopTo;
+   private char[] nopLetter;
+   private int nops;
+
+   /** source, letter, symbol pushed and destination of each push */
+   private int[] pushFrom, pushTo;
+   private char[] pushLetter, pushSymbol;
+   private int pushes;
+
+   /** source, letter, symbol popped and destination of each pop */
+   private int[] popFrom, popTo;
+   private char[] popLetter, popSymbol;
+   private int pops;
+
+   /** whether A[p,q], C[p,t] and U[p] generate any word */
+   private boolean[][] a, c;
+   private boolean[] u;
+
+   /** A[p,q] found to generate some word but not yet followed up,
+       as p * n + q */
+   private int[] work;
+   private int top;
+
+   /** dense number of each nonterminal reached so far, or -1 */
+   private int[] dense;
+
+   /** nonterminals whose rules are still to be built */
+   private int[] queue;
+   private int queued;
+
+
+   // CONSTRUCTOR
+
+   /** constructs a grammar generating the language of the given pushdown
+       automaton snapshot */
+   public ContextFreeGrammar(SharedStackPDA pda) {
+      this.pda = pda;
+      split();
+      findProductive();
+      build();
+   }
+
+
+   // ACCESSORS
+
+   /** returns the start symbol, which is always nonterminal 0 */
+   public int getStart() { return 0; }
+
+   /** returns the number of nonterminals */
+   public int getNumNonterminals() { return numNonterminals; }
+
+   /** returns the number of rules */
+   public int getNumRules() { return numRules; }
+
+   /** returns the positions of the rules of the given nonterminal */
+   public int[] getRules(int nonterminal) { return rules[nonterminal]; }
+
+   /** returns the symbol at the given position of the rules array */
+   public int getSymbol(int pos) { return symbols[pos]; }
+
+   /** returns the left-hand side of the rule containing the given
+       position of the rules array */
+   public int getLhs(int pos) { return lhs[pos]; }
+
+   /** tests whether the given nonterminal generates the empty word */
+   public boolean isNullable(int nonterminal) {
+      return nullable[nonterminal];
+   }
+
+   /** returns the automaton */
+   public SharedStackPDA getPDA() { return pda; }
+
+
+   // HELPER METHODS
+
+   /** lists the moves of the automaton as pops, pushes and moves
+       doing neither */
+   private void split() {
+      int states = pda.getNumStates();
+      int moves = 0, both = 0;
+      for (int p=0; p<states; p++) {
+         for (int k=0; k<pda.getNumMoves(p); k++) {
+            moves++;
+            if (pda.getPop(p, k) != FiniteStateMachine.EPSILON &&
+               pda.getPush(p, k) != FiniteStateMachine.EPSILON) both++;
+         }
+      }
+      n = states + both;
+      nopFrom = new int[moves];
+      nopTo = new int[moves];
+      nopLetter = new char[moves];
+      pushFrom = new int[moves];
+      pushTo = new int[moves];
+      pushLetter = new char[moves];
+      pushSymbol = new char[moves];
+      popFrom = new int[moves];
+      popTo = new int[moves];
+      popLetter = new char[moves];
+      popSymbol = new char[moves];
+      int extra = states;
+      for (int p=0; p<states; p++) {
+         for (int k=0; k<pda.getNumMoves(p); k++) {
+            char l = pda.getLetter(p, k);
+            char x = pda.getPop(p, k), y = pda.getPush(p, k);
+            int q = pda.getDest(p, k);
+            if (x == FiniteStateMachine.EPSILON &&
+               y == FiniteStateMachine.EPSILON)
+            {
+               nopFrom[nops] = p;
+               nopLetter[nops] = l;
+               nopTo[nops++] = q;
+            }
+            else if (x == FiniteStateMachine.EPSILON) {
+               addPush(p, l, y, q);
+            }
+            else if (y == FiniteStateMachine.EPSILON) {
+               addPop(p, l, x, q);
+            }
+            else {
+               // pop through an extra state, then push
+               addPop(p, l, x, extra);
+               addPush(extra++, FiniteStateMachine.EPSILON, y, q);
+            }
+         }
+      }
+   }
+
+   /** adds a push to the list of pushes */
+   private void addPush(int p, char l, char y, int q) {
+      pushFrom[pushes] = p;
+      pushLetter[pushes] = l;
+      pushSymbol[pushes] = y;
+      pushTo[pushes++] = q;
+   }
+
+   /** adds a pop to the list of pops */
+   private void addPop(int p, char l, char x, int q) {
+      popFrom[pops] = p;
+      popLetter[pops] = l;
+      popSymbol[pops] = x;
+      popTo[pops++] = q;
+   }
+
+   /** finds which of the nonterminals A, C and U generate any word */
+   private void findProductive() {
+      a = new boolean[n][n];
+      c = new boolean[n][n];
+      u = new boolean[n];
+      work = new int[16];
+      for (int p=0; p<n; p++) setA(p, p);
+      while (top > 0) {
+         int f = work[--top];
+         int p = f / n, q = f % n;
+
+         // A[x,q] -> l A[p,q] for each move x -l-> p
+         for (int e=0; e<nops; e++) {
+            if (nopTo[e] == p) setA(nopFrom[e], q);
+         }
+
+         // A[x,q] -> C[x,p] A[p,q]
+         for (int x=0; x<n; x++) {
+            if (c[x][p]) setA(x, q);
+         }
+
+         // C[x,t] -> l A[p,q] l' for each push x -l,Y-> p
+         // and pop q -l',Y-> t; then A[x,z] -> C[x,t] A[t,z]
+         for (int i=0; i<pushes; i++) {
+            if (pushTo[i] != p) continue;
+            for (int j=0; j<pops; j++) {
+               if (popFrom[j] != q || popSymbol[j] != pushSymbol[i]) continue;
+               int x = pushFrom[i], t = popTo[j];
+               if (c[x][t]) continue;
+               c[x][t] = true;
+               for (int z=0; z<n; z++) {
+                  if (a[t][z]) setA(x, z);
+               }
+            }
+         }
+      }
+
+      // U[p] -> empty if p accepts, l U[r], C[p,t] U[t], or l U[r]
+      // for a push p -l,Y-> r whose symbol is never popped
+      for (int p=0; p<pda.getNumStates(); p++) u[p] = pda.isAccept(p);
+      boolean changed = true;
+      while (changed) {
+         changed = false;
+         for (int e=0; e<nops; e++) {
+            if (u[nopTo[e]] && !u[nopFrom[e]]) changed = u[nopFrom[e]] = true;
+         }
+         for (int i=0; i<pushes; i++) {
+            if (u[pushTo[i]] && !u[pushFrom[i]]) {
+               changed = u[pushFrom[i]] = true;
+            }
+         }
+         for (int p=0; p<n; p++) {
+            for (int t=0; t<n && !u[p]; t++) {
+               if (c[p][t] && u[t]) changed = u[p] = true;
+            }
+         }
+      }
+   }
+
+   /** records that A[p,q] generates some word */
+   private void setA(int p, int q) {
+      if (a[p][q]) return;
+      a[p][q] = true;
+      if (top == work.length) work = grow(work);
+      work[top++] = p * n + q;
+   }
+
+   /** builds the rules of the nonterminals reachable from the start */
+   private void build() {
+      dense = new int[2 * n * n + n];
+      for (int i=0; i<dense.length; i++) dense[i] = -1;
+      queue = new int[16];
+      Vector ruleList = new Vector();
+      int st = pda.getStart();
+
+      // the start symbol gets number 0 even if it generates nothing
+      reach(st >= 0 && u[st] ? 2 * n * n + st : -1);
+      for (int next=0; next<queued; next++) {
+         int raw = queue[next];
+         int head = dense[raw];
+         if (raw < n * n) {
+            // A[p,q]
+            int p = raw / n, q = raw % n;
+            if (p == q) ruleList.addElement(new int[] {head});
+            for (int e=0; e<nops; e++) {
+               if (nopFrom[e] == p && a[nopTo[e]][q]) {
+                  ruleList.addElement(rule(head, nopLetter[e],
+                     reach(nopTo[e] * n + q), (char) 0, -1));
+               }
+            }
+            for (int t=0; t<n; t++) {
+               if (c[p][t] && a[t][q]) {
+                  ruleList.addElement(rule(head, (char) 0,
+                     reach(n * n + p * n + t), (char) 0, reach(t * n + q)));
+               }
+            }
+         }
+         else if (raw < 2 * n * n) {
+            // C[p,t]
+            int p = (raw - n * n) / n, t = (raw - n * n) % n;
+            for (int i=0; i<pushes; i++) {
+               if (pushFrom[i] != p) continue;
+               for (int j=0; j<pops; j++) {
+                  if (popTo[j] != t || popSymbol[j] != pushSymbol[i] ||
+                     !a[pushTo[i]][popFrom[j]])
+                  {
+                     continue;
+                  }
+                  ruleList.addElement(rule(head, pushLetter[i],
+                     reach(pushTo[i] * n + popFrom[j]), popLetter[j], -1));
+               }
+            }
+         }
+         else {
+            // U[p]
+            int p = raw - 2 * n * n;
+            if (p < pda.getNumStates() && pda.isAccept(p)) {
+               ruleList.addElement(new int[] {head});
+            }
+            for (int e=0; e<nops; e++) {
+               if (nopFrom[e] == p && u[nopTo[e]]) {
+                  ruleList.addElement(rule(head, nopLetter[e],
+                     reach(2 * n * n + nopTo[e]), (char) 0, -1));
+               }
+            }
+            for (int i=0; i<pushes; i++) {
+               if (pushFrom[i] == p && u[pushTo[i]]) {
+                  ruleList.addElement(rule(head, pushLetter[i],
+                     reach(2 * n * n + pushTo[i]), (char) 0, -1));
+               }
+            }
+            for (int t=0; t<n; t++) {
+               if (c[p][t] && u[t]) {
+                  ruleList.addElement(rule(head, (char) 0,
+                     reach(n * n + p * n + t), (char) 0,
+                     reach(2 * n * n + t)));
+               }
+            }
+         }
+      }
+
+      // lay the rules out end to end
+      numRules = ruleList.size();
+      int size = 0;
+      int[] count = new int[numNonterminals];
+      for (int i=0; i<numRules; i++) {
+         int[] r = (int[]) ruleList.elementAt(i);
+         size += r.length;
+         count[r[0]]++;
+      }
+      symbols = new int[size];
+      lhs = new int[size];
+      rules = new int[numNonterminals][];
+      for (int i=0; i<numNonterminals; i++) rules[i] = new int[count[i]];
+      int pos = 0;
+      for (int i=0; i<numRules; i++) {
+         int[] r = (int[]) ruleList.elementAt(i);
+         rules[r[0]][--count[r[0]]] = pos;
+         for (int j=1; j<r.length; j++) {
+            symbols[pos] = r[j];
+            lhs[pos++] = r[0];
+         }
+         symbols[pos] = END;
+         lhs[pos++] = r[0];
+      }
+      findNullable();
+
+      // the construction state is no longer needed
+      a = c = null;
+      work = dense = queue = null;
+   }
+
+   /** returns the dense number of the given raw nonterminal, queueing
+       it for its rules to be built if it was not reached before;
+       -1 reaches a nonterminal without rules */
+   private int reach(int raw) {
+      if (raw < 0) return numNonterminals++;
+      if (dense[raw] < 0) {
+         dense[raw] = numNonterminals++;
+         if (queued == queue.length) queue = grow(queue);
+         queue[queued++] = raw;
+      }
+      return dense[raw];
+   }
+
+   /** returns a rule with the given left-hand side and a right-hand side
+       made of a letter, a nonterminal, a letter and a nonterminal, leaving
+       out the letters that are EPSILON or 0 and the nonterminals that
+       are -1 */
+   private static int[] rule(int head, char l1, int x1, char l2, int x2) {
+      int[] r = new int[5];
+      int len = 0;
+      r[len++] = head;
+      if (l1 != FiniteStateMachine.EPSILON && l1 != 0) r[len++] = -1 - l1;
+      if (x1 >= 0) r[len++] = x1;
+      if (l2 != FiniteStateMachine.EPSILON && l2 != 0) r[len++] = -1 - l2;
+      if (x2 >= 0) r[len++] = x2;
+      int[] t = new int[len];
+      System.arraycopy(r, 0, t, 0, len);
+      return t;
+   }
+
+   /** finds the nonterminals that generate the empty word */
+   private void findNullable() {
+      nullable = new boolean[numNonterminals];
+      boolean changed = true;
+      while (changed) {
+         changed = false;
+         for (int x=0; x<numNonterminals; x++) {
+            if (nullable[x]) continue;
+            for (int i=0; i<rules[x].length && !nullable[x]; i++) {
+               int pos = rules[x][i];
+               while (symbols[pos] >= 0 && nullable[symbols[pos]]) pos++;
+               if (symbols[pos] == END) changed = nullable[x] = true;
+            }
+         }
+      }
+   }
+
+   /** returns a copy of the given array with twice the length */
+   private static int[] grow(int[] array) {
+      int[] a = new int[2 * array.length];
+      System.arraycopy(array, 0, a, 0, array.length);
+      return a;
+   }
+
+}
+
@@ -0,0 +1,70 @@
+// DFAMatcher.java
+
+import java.nio.ByteBuffer;
+
+/** An incremental matcher running a compiled deterministic automaton,
+    whose whole state is a single state number. */
+public class DFAMatcher extends StreamMatcher {
+
+   // STATE VARIABLES
+
+   /** the automaton */
+   private CompiledDFA dfa;
+
+   /** current state */
+   private int state;
+
+
+   // CONSTRUCTORS
+
+   /** constructs a matcher for a compiled snapshot
+       of the given finite automaton */
+   public DFAMatcher(FiniteAutomaton fa) { this(new CompiledDFA(fa)); }
+
+   /** constructs a matcher for the given compiled automaton */
+   public DFAMatcher(CompiledDFA dfa) {
+      this.dfa = dfa;
+      reset();
+   }
+
+
+   // REQUIRED METHODS
+
+   /** feeds the given range of characters to the matcher */
+   public void feed(char[] buf, int off, int len) {
+      int s = state;
+      for (int i=off; i<off+len && !dfa.isDead(s); i++) {
+         s = dfa.next(s, buf[i]);
+      }
+      state = s;
+      position += len;
+   }
+
+   /** feeds the given range of bytes to the matcher, by absolute index
+       and without changing the buffer's position */
+   public void feed(ByteBuffer buf, int off, int len) {
+      int s = state;
+      for (int i=off; i<off+len && !dfa.isDead(s); i++) {
+         s = dfa.next(s, (char) (buf.get(i) & 0xff));
+      }
+      state = s;
+      position += len;
+   }
+
+   /** returns whether the automaton accepts the characters fed so far */
+   public boolean finish() { return dfa.isAccept(state); }
+
+   /** starts over with an empty word */
+   public void reset() {
+      state = dfa.getStart();
+      position = 0;
+   }
+
+
+   // ACCESSORS
+
+   /** returns the current state */
+   public int getState() { return state; }
+
+}
+
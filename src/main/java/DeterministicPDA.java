@@ -0,0 +1,272 @@
+// DeterministicPDA.java
+
+/** A deterministic pushdown automaton compiled for fast headless runs.
+    A pushdown automaton snapshot is deterministic if no two of the moves
+    from any state can both apply to the same configuration: that is,
+    two moves from one state always read different letters (neither
+    reading nothing) or pop different symbols (neither popping nothing).
+    Then every computation has a single branch, so it is run with one
+    stack in a growable char array and flat tables giving the move for
+    each state, letter and top of the stack, with nothing allocated per
+    letter. Letters and stack symbols are numbered by two Alphabets, in
+    which class 0 stands for the letters without moves and for the empty
+    stack. This class is immutable, so one instance can be shared by any
+    number of threads. */
+public class DeterministicPDA {
+
+   // STATE VARIABLES
+
+   /** the automaton snapshot */
+   private SharedStackPDA pda;
+
+   /** number of states */
+   private int numStates;
+
+   /** letter classes, with class 0 for the letters without moves */
+   private Alphabet letters;
+
+   /** stack symbol classes, with class 0 for the empty stack */
+   private Alphabet symbols;
+
+   /** number of letter classes and of stack symbol classes */
+   private int numLetters, numSymbols;
+
+   /** move made reading each letter class in each state with each
+       symbol class on top of the stack, or -1 */
+   private int[] letterMove;
+
+   /** epsilon move made in each state with each symbol class on top of
+       the stack, or -1 */
+   private int[] epsilonMove;
+
+   /** destination state of each move */
+   private int[] moveDest;
+
+   /** whether each move pops the top of the stack */
+   private boolean[] movePops;
+
+   /** symbol class pushed by each move, or 0 for none */
+   private char[] movePush;
+
+   /** whether each state is an accept state */
+   private boolean[] accept;
+
+
+   // CONSTRUCTORS
+
+   /** compiles the given deterministic automaton snapshot */
+   private DeterministicPDA(SharedStackPDA pda) {
+      this.pda = pda;
+      numStates = pda.getNumStates();
+      accept = new boolean[numStates];
+      for (int p=0; p<numStates; p++) accept[p] = pda.isAccept(p);
+
+      // number the letters and stack symbols from 1
+      int moves = 0;
+      for (int p=0; p<numStates; p++) moves += pda.getNumMoves(p);
+      char[] ls = new char[moves], ss = new char[2 * moves];
+      int nl = 0, ns = 0;
+      for (int p=0; p<numStates; p++) {
+         for (int k=0; k<pda.getNumMoves(p); k++) {
+            nl = addSymbol(ls, nl, pda.getLetter(p, k));
+            ns = addSymbol(ss, ns, pda.getPop(p, k));
+            ns = addSymbol(ss, ns, pda.getPush(p, k));
+         }
+      }
+      letters = number(ls, nl);
+      symbols = number(ss, ns);
+      numLetters = nl + 1;
+      numSymbols = ns + 1;
+
+      // fill in the move tables
+      letterMove = new int[numStates * numLetters * numSymbols];
+      epsilonMove = new int[numStates * numSymbols];
+      for (int i=0; i<letterMove.length; i++) letterMove[i] = -1;
+      for (int i=0; i<epsilonMove.length; i++) epsilonMove[i] = -1;
+      moveDest = new int[moves];
+      movePops = new boolean[moves];
+      movePush = new char[moves];
+      int m = 0;
+      for (int p=0; p<numStates; p++) {
+         for (int k=0; k<pda.getNumMoves(p); k++, m++) {
+            char l = pda.getLetter(p, k), x = pda.getPop(p, k);
+            char y = pda.getPush(p, k);
+            moveDest[m] = pda.getDest(p, k);
+            movePops[m] = x != FiniteStateMachine.EPSILON;
+            movePush[m] = y == FiniteStateMachine.EPSILON ? 0 :
+               (char) symbols.classOf(y);
+
+            // a move popping nothing applies whatever is on top
+            int t0 = movePops[m] ? symbols.classOf(x) : 0;
+            int t1 = movePops[m] ? t0 + 1 : numSymbols;
+            for (int t=t0; t<t1; t++) {
+               if (l == FiniteStateMachine.EPSILON) {
+                  epsilonMove[p * numSymbols + t] = m;
+               }
+               else {
+                  int c = letters.classOf(l);
+                  letterMove[(p * numLetters + c) * numSymbols + t] = m;
+               }
+            }
+         }
+      }
+   }
+
+   /** compiles the given automaton snapshot, returning null if it is
+       not deterministic */
+   public static DeterministicPDA create(SharedStackPDA pda) {
+      if (!isDeterministic(pda)) return null;
+      return new DeterministicPDA(pda);
+   }
+
+
+   // SIMULATION
+
+   /** runs the automaton on the given word with a stack of at most the
+       given depth, and returns PDARun.ACCEPTED, PDARun.REJECTED, or
+       PDARun.UNDECIDED if the stack would grow deeper.
+
+       A chain of epsilon moves may never end, and then the word is
+       rejected. Once a chain has run for as many moves as there are pairs
+       of a state and a top symbol, each such pair it visits is recorded
+       with the depth of the stack and the time of the visit. The chain
+       loops forever exactly when it comes back to a recorded pair with
+       the stack at least as deep, the stack having been no shallower in
+       between: the moves from the first visit never looked below its top
+       symbol, so they repeat from the second visit on. Since each move
+       changes the depth by at most one, the stack was shallower in
+       between exactly when it was one symbol shallower, so the time of
+       the last visit at each depth is kept while a chain is recorded. */
+   public int run(CharSequence word, int maxDepth) {
+      int q = pda.getStart();
+      if (q < 0) return PDARun.REJECTED;
+      char[] stack = new char[16];
+      int depth = 0;
+      int len = word.length();
+      int i = 0;
+
+      // number of epsilon moves made since the last letter
+      int chain = 0;
+
+      // loop detection: the number of epsilon moves made so far, and the
+      // value it had when the current chain started being recorded, or -1
+      long time = 0, since = -1;
+
+      // depth and time of the last recorded visit to each pair of a state
+      // and a top symbol, and time of the last recorded visit at each depth
+      int[] seenDepth = null;
+      long[] seenTime = null, depthTime = null;
+      while (true) {
+         // once the word is read, accept in any state along the
+         // remaining epsilon moves
+         if (i == len && accept[q]) return PDARun.ACCEPTED;
+         int top = depth == 0 ? 0 : stack[depth - 1];
+         int m = epsilonMove[q * numSymbols + top];
+         if (m >= 0) {
+            time++;
+            if (++chain > numStates * numSymbols) {
+               if (since < 0) {
+                  if (seenDepth == null) {
+                     seenDepth = new int[numStates * numSymbols];
+                     seenTime = new long[numStates * numSymbols];
+                     depthTime = new long[stack.length + 1];
+                  }
+                  since = time;
+               }
+               int pair = q * numSymbols + top, d = seenDepth[pair];
+               if (seenTime[pair] >= since && d <= depth &&
+                  (d == 0 || depthTime[d - 1] < seenTime[pair]))
+               {
+                  // the chain loops without reading another letter
+                  return PDARun.REJECTED;
+               }
+               seenDepth[pair] = depth;
+               seenTime[pair] = time;
+               depthTime[depth] = time;
+            }
+         }
+         else {
+            if (i == len) return PDARun.REJECTED;
+            int c = letters.classOf(word.charAt(i++));
+            m = letterMove[(q * numLetters + c) * numSymbols + top];
+            if (m < 0) return PDARun.REJECTED;
+            chain = 0;
+            since = -1;
+         }
+         if (movePops[m]) depth--;
+         if (movePush[m] != 0) {
+            if (depth == maxDepth) return PDARun.UNDECIDED;
+            if (depth == stack.length) {
+               char[] s = new char[2 * depth];
+               System.arraycopy(stack, 0, s, 0, depth);
+               stack = s;
+               if (depthTime != null) {
+                  long[] t = new long[2 * depth + 1];
+                  System.arraycopy(depthTime, 0, t, 0, depth + 1);
+                  depthTime = t;
+               }
+            }
+            stack[depth++] = movePush[m];
+         }
+         q = moveDest[m];
+      }
+   }
+
+
+   // ACCESSORS
+
+   /** returns the automaton snapshot */
+   public SharedStackPDA getPDA() { return pda; }
+
+   /** tests whether no two moves from any state of the given automaton
+       snapshot can both apply to the same configuration */
+   public static boolean isDeterministic(SharedStackPDA pda) {
+      char eps = FiniteStateMachine.EPSILON;
+      for (int p=0; p<pda.getNumStates(); p++) {
+         int moves = pda.getNumMoves(p);
+         for (int j=0; j<moves; j++) {
+            char l = pda.getLetter(p, j), x = pda.getPop(p, j);
+            for (int k=j+1; k<moves; k++) {
+               char l2 = pda.getLetter(p, k), x2 = pda.getPop(p, k);
+               if (l != l2 && l != eps && l2 != eps) continue;
+               if (x != x2 && x != eps && x2 != eps) continue;
+               if (l == l2 && x == x2 && pda.getPush(p, j) ==
+                  pda.getPush(p, k) && pda.getDest(p, j) == pda.getDest(p, k))
+               {
+                  // the same move listed twice
+                  continue;
+               }
+               return false;
+            }
+         }
+      }
+      return true;
+   }
+
+
+   // HELPER METHODS
+
+   /** adds the given letter or symbol to the first n entries of the given
+       array unless it is EPSILON or already there, returning the new
+       number of entries */
+   private static int addSymbol(char[] list, int n, char c) {
+      if (c == FiniteStateMachine.EPSILON) return n;
+      for (int i=0; i<n; i++) if (list[i] == c) return n;
+      list[n] = c;
+      return n + 1;
+   }
+
+   /** returns an Alphabet numbering the first n entries of the given
+       array from 1 */
+   private static Alphabet number(char[] list, int n) {
+      char[] l = new char[n];
+      int[] classes = new int[n];
+      for (int i=0; i<n; i++) {
+         l[i] = list[i];
+         classes[i] = i + 1;
+      }
+      return new Alphabet(l, classes, n + 1);
+   }
+
+}
+
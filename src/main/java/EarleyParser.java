@@ -0,0 +1,177 @@
+// EarleyParser.java
+
+import java.util.*;
+
+/** Decides whether a context-free grammar generates a word, in time cubic
+    in the length of the word for any grammar. After each letter the
+    parser keeps the set of items (a rule with a dot marking how much of
+    it has been matched, and the position where the match began), adding
+    items by predicting the rules of the nonterminal after each dot,
+    completing the items waiting on a nonterminal whose match has ended,
+    and moving the dot over the next letter. Nonterminals that generate
+    the empty word are stepped over as soon as they are predicted (as
+    suggested by Aycock and Horspool), so that no completions are
+    missed. The parser keeps no state between words, so one instance can
+    be shared by any number of threads. */
+public class EarleyParser {
+
+   // STATE VARIABLES
+
+   /** the grammar */
+   private ContextFreeGrammar grammar;
+
+
+   // CONSTRUCTOR
+
+   /** constructs a parser for the given grammar */
+   public EarleyParser(ContextFreeGrammar grammar) {
+      this.grammar = grammar;
+   }
+
+
+   // PARSING
+
+   /** returns whether the grammar generates the given word */
+   public boolean accepts(CharSequence word) {
+      int len = word.length();
+      Items items = new Items();
+      int[] pending = new int[16];
+      int numPending = 0;
+
+      int start = grammar.getStart();
+      int[] startRules = grammar.getRules(start);
+      for (int i=0; i<startRules.length; i++) items.add(startRules[i], 0);
+
+      for (int i=0; i<=len; i++) {
+         // items of set i are listed from items.first onwards
+         int c = i < len ? word.charAt(i) : -1;
+         for (int k=items.first; k<items.count; k++) {
+            int dot = items.dot[k], from = items.from[k];
+            int s = grammar.getSymbol(dot);
+            if (s == ContextFreeGrammar.END) {
+               // complete the items of set from waiting on this nonterminal
+               int x = grammar.getLhs(dot);
+               for (int w=items.waiting(from, x); w>=0; w=items.link[w]) {
+                  items.add(items.dot[w] + 1, items.from[w]);
+               }
+            }
+            else if (s >= 0) {
+               // predict the rules of the nonterminal after the dot
+               items.wait(i, s, k);
+               int[] r = grammar.getRules(s);
+               for (int j=0; j<r.length; j++) items.add(r[j], i);
+               if (grammar.isNullable(s)) items.add(dot + 1, from);
+            }
+            else if (-1 - s == c) {
+               // move the dot over the letter, into set i + 1
+               if (numPending + 1 >= pending.length) {
+                  int[] p = new int[2 * pending.length];
+                  System.arraycopy(pending, 0, p, 0, numPending);
+                  pending = p;
+               }
+               pending[numPending++] = dot + 1;
+               pending[numPending++] = from;
+            }
+         }
+         if (i == len) break;
+
+         // start set i + 1 with the items that read letter i
+         if (numPending == 0) return false;
+         items.next();
+         for (int k=0; k<numPending; k+=2) {
+            items.add(pending[k], pending[k+1]);
+         }
+         numPending = 0;
+      }
+
+      // accept if a rule of the start symbol matched the whole word
+      for (int k=items.first; k<items.count; k++) {
+         int dot = items.dot[k];
+         if (items.from[k] == 0 &&
+            grammar.getSymbol(dot) == ContextFreeGrammar.END &&
+            grammar.getLhs(dot) == start)
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+
+   // ACCESSORS
+
+   /** returns the grammar */
+   public ContextFreeGrammar getGrammar() { return grammar; }
+
+
+   // HELPER CLASSES
+
+   /** the items of all sets of one parse, stored end to end */
+   private static class Items {
+
+      /** dotted rule and start position of each item */
+      int[] dot = new int[64], from = new int[64];
+
+      /** next item of the same set waiting on the same nonterminal,
+          or -1 */
+      int[] link = new int[64];
+
+      /** number of items */
+      int count;
+
+      /** first item of the current set */
+      int first;
+
+      /** items of the current set, for removing duplicates */
+      Hashtable seen = new Hashtable();
+
+      /** last item of each set waiting on each nonterminal, keyed by
+          set and nonterminal */
+      Hashtable last = new Hashtable();
+
+      /** adds an item to the current set unless it is already there */
+      void add(int d, int f) {
+         Long key = new Long(((long) d << 32) | f);
+         if (seen.put(key, key) != null) return;
+         if (count == dot.length) {
+            dot = grow(dot);
+            from = grow(from);
+            link = grow(link);
+         }
+         dot[count] = d;
+         from[count] = f;
+         link[count] = -1;
+         count++;
+      }
+
+      /** starts the next set */
+      void next() {
+         first = count;
+         seen.clear();
+      }
+
+      /** records that item k of set i is waiting on nonterminal x */
+      void wait(int i, int x, int k) {
+         Long key = new Long(((long) i << 32) | x);
+         Integer prev = (Integer) last.put(key, new Integer(k));
+         link[k] = prev == null ? -1 : prev.intValue();
+      }
+
+      /** returns the last item of set i waiting on nonterminal x,
+          or -1 */
+      int waiting(int i, int x) {
+         Integer k = (Integer) last.get(new Long(((long) i << 32) | x));
+         return k == null ? -1 : k.intValue();
+      }
+
+      /** returns a copy of the given array with twice the length */
+      static int[] grow(int[] array) {
+         int[] a = new int[2 * array.length];
+         System.arraycopy(array, 0, a, 0, array.length);
+         return a;
+      }
+
+   }
+
+}
+
@@ -0,0 +1,193 @@
+// EpsilonClosure.java
+
+import java.util.*;
+
+/** A cached table of the epsilon closure of each state of an automaton,
+    stored as bitsets over the states' indices. The closures are computed
+    all at once from the strongly connected components of the epsilon
+    transitions (using Tarjan's algorithm), and recomputed only when an
+    epsilon transition or the set of states changes. */
+public class EpsilonClosure {
+
+   // STATE VARIABLES
+
+   /** Vector of states in the automaton */
+   private Vector states;
+
+   /** transition function of the automaton */
+   private TransitionFunction function;
+
+   /** closure bitset of each state, or null if the table is out of date;
+       states in the same strongly connected component share a bitset */
+   private long[][] closure;
+
+   /** number of states when the table was computed */
+   private int numStates;
+
+   /** epsilon version of the transition function when
+       the table was computed */
+   private int version;
+
+
+   // CONSTRUCTOR
+
+   /** constructs an epsilon closure table for the automaton with the given
+       Vector of states and transition function */
+   public EpsilonClosure(Vector states, TransitionFunction function) {
+      this.states = states;
+      this.function = function;
+   }
+
+
+   // MODIFIERS
+
+   /** marks the table as out of date */
+   public void invalidate() { closure = null; }
+
+   /** updates the table for a new state, with no transitions yet, that has
+       been added to the end of the Vector of states */
+   public void stateAdded() {
+      if (closure == null || numStates != states.size() - 1) {
+         closure = null;
+         return;
+      }
+      int words = (numStates + 64) / 64;
+      long[][] c = new long[numStates + 1][];
+      for (int i=0; i<numStates; i++) {
+         c[i] = closure[i];
+         if (c[i].length < words) {
+            // widen each shared bitset exactly once
+            long[] wide = new long[words];
+            System.arraycopy(c[i], 0, wide, 0, c[i].length);
+            for (int j=i; j<numStates; j++) {
+               if (closure[j] == c[i]) closure[j] = wide;
+            }
+            c[i] = wide;
+         }
+      }
+      c[numStates] = new long[words];
+      BitSetNFA.set(c[numStates], numStates);
+      closure = c;
+      numStates++;
+   }
+
+
+   // ACCESSORS
+
+   /** returns the closure bitset of the state with the given index;
+       the returned array must not be modified */
+   public long[] getClosure(int i) {
+      update();
+      return closure[i];
+   }
+
+   /** marks as current every state reachable through epsilon
+       transitions from the states already marked current */
+   public void close(boolean[] b) {
+      update();
+      boolean[] copy = (boolean[]) b.clone();
+      for (int i=0; i<numStates; i++) {
+         if (!copy[i]) continue;
+         long[] c = closure[i];
+         for (int j=0; j<numStates; j++) {
+            if (BitSetNFA.contains(c, j)) b[j] = true;
+         }
+      }
+   }
+
+
+   // HELPER METHODS
+
+   /** recomputes the table if it is out of date */
+   private void update() {
+      synchronized (states) {
+         if (closure != null && numStates == states.size() &&
+            version == function.getEpsilonVersion())
+         {
+            return;
+         }
+         numStates = states.size();
+         version = function.getEpsilonVersion();
+         int words = (numStates + 63) / 64;
+
+         // build the epsilon subgraph as adjacency lists of state indices
+         Hashtable index = new Hashtable();
+         for (int i=0; i<numStates; i++) {
+            index.put(states.elementAt(i), new Integer(i));
+         }
+         int[][] adj = new int[numStates][];
+         for (int i=0; i<numStates; i++) {
+            State s = (State) states.elementAt(i);
+            Vector eps = function.getTransitions(
+               new TransitionTuple(s, FiniteStateMachine.EPSILON));
+            int n = 0;
+            int[] a = new int[eps == null ? 0 : eps.size()];
+            for (int k=0; k<a.length; k++) {
+               TransitionTuple t = (TransitionTuple) eps.elementAt(k);
+               Integer q = (Integer) index.get(t.getState());
+               if (q != null) a[n++] = q.intValue();
+            }
+            adj[i] = new int[n];
+            System.arraycopy(a, 0, adj[i], 0, n);
+         }
+
+         // Tarjan's algorithm, iteratively; components are completed in
+         // reverse topological order, so each component's successors
+         // already have their closures when it is completed
+         long[][] c = new long[numStates][];
+         int[] low = new int[numStates];
+         int[] num = new int[numStates];
+         int[] edge = new int[numStates];
+         int[] call = new int[numStates];
+         int[] scc = new int[numStates];
+         boolean[] onStack = new boolean[numStates];
+         int count = 0, sp = 0;
+         for (int root=0; root<numStates; root++) {
+            if (num[root] != 0) continue;
+            int csp = 0;
+            call[csp++] = root;
+            num[root] = low[root] = ++count;
+            scc[sp++] = root;
+            onStack[root] = true;
+            while (csp > 0) {
+               int v = call[csp - 1];
+               if (edge[v] < adj[v].length) {
+                  int w = adj[v][edge[v]++];
+                  if (num[w] == 0) {
+                     num[w] = low[w] = ++count;
+                     scc[sp++] = w;
+                     onStack[w] = true;
+                     call[csp++] = w;
+                  }
+                  else if (onStack[w] && num[w] < low[v]) low[v] = num[w];
+                  continue;
+               }
+               csp--;
+               if (csp > 0) {
+                  int u = call[csp - 1];
+                  if (low[v] < low[u]) low[u] = low[v];
+               }
+               if (low[v] != num[v]) continue;
+
+               // v is the root of a component; pop it and compute its closure
+               long[] set = new long[words];
+               int top = sp;
+               do BitSetNFA.set(set, scc[--sp]); while (scc[sp] != v);
+               for (int k=sp; k<top; k++) onStack[scc[k]] = false;
+               for (int k=sp; k<top; k++) {
+                  int[] a = adj[scc[k]];
+                  for (int j=0; j<a.length; j++) {
+                     long[] cj = c[a[j]];
+                     if (cj == null || cj == set) continue;
+                     for (int x=0; x<words; x++) set[x] |= cj[x];
+                  }
+               }
+               for (int k=sp; k<top; k++) c[scc[k]] = set;
+            }
+         }
+         closure = c;
+      }
+   }
+
+}
+
@@ -0,0 +1,195 @@
+// Equivalence.java
+
+import java.util.*;
+
+/** Decides whether two finite automata accept the same language, using
+    the algorithm of Hopcroft and Karp: both automata are determinized on
+    the fly, and pairs of DFA states reached by the same word are merged
+    in a union-find structure, so that a pair already known to be
+    equivalent (directly or by transitivity) is never explored again.
+    Pairs are explored breadth first, so when the languages differ, the
+    word reaching the first pair that disagrees on acceptance is a
+    shortest word accepted by exactly one of the automata. */
+public class Equivalence {
+
+   // STATE VARIABLES
+
+   /** the automata being compared */
+   private BitSetNFA first, second;
+
+   /** common refinement of the letter classes of both automata */
+   private Alphabet alphabet;
+
+   /** letter class of each automaton for each common letter class */
+   private int[] firstClass, secondClass;
+
+   /** number of each DFA state of each automaton, keyed by its set of
+       NFA states; the numbers of both automata are drawn from one range */
+   private Hashtable firstIds = new Hashtable(), secondIds = new Hashtable();
+
+   /** set of NFA states of each numbered DFA state */
+   private Vector sets = new Vector();
+
+   /** whether each numbered DFA state is an accept state */
+   private boolean[] accepting = new boolean[64];
+
+   /** union-find parent of each numbered DFA state */
+   private int[] parent = new int[64];
+
+   /** DFA states of each explored pair */
+   private int[] pairFirst = new int[64], pairSecond = new int[64];
+
+   /** pair from which each explored pair was reached, or -1 */
+   private int[] pairFrom = new int[64];
+
+   /** common letter class read to reach each explored pair */
+   private int[] pairClass = new int[64];
+
+   /** number of explored pairs */
+   private int numPairs;
+
+   /** a shortest word accepted by exactly one of the automata,
+       or null if they are equivalent */
+   private String counterexample;
+
+
+   // CONSTRUCTORS
+
+   /** compares snapshots of the given finite automata */
+   public Equivalence(FiniteAutomaton a, FiniteAutomaton b) {
+      this(a.getNFA(), b.getNFA());
+   }
+
+   /** compares the given automaton snapshots */
+   public Equivalence(BitSetNFA first, BitSetNFA second) {
+      this.first = first;
+      this.second = second;
+      alphabet = Alphabet.join(first.getAlphabet(), second.getAlphabet());
+      firstClass = alphabet.project(first.getAlphabet());
+      secondClass = alphabet.project(second.getAlphabet());
+      compare();
+   }
+
+
+   // ACCESSORS
+
+   /** tests whether the automata accept the same language */
+   public boolean isEquivalent() { return counterexample == null; }
+
+   /** returns a shortest word accepted by exactly one of the automata,
+       or null if they are equivalent */
+   public String getCounterexample() { return counterexample; }
+
+   /** returns the number of pairs of DFA states explored */
+   public int getNumPairs() { return numPairs; }
+
+   /** returns the number of DFA states built, over both automata */
+   public int getNumStates() { return sets.size(); }
+
+
+   // HELPER METHODS
+
+   /** runs the breadth-first search over pairs of DFA states */
+   private void compare() {
+      long[] a = first.newSet(), b = second.newSet();
+      first.start(a);
+      second.start(b);
+      int x = id(firstIds, first, a), y = id(secondIds, second, b);
+      if (accepting[x] != accepting[y]) {
+         counterexample = "";
+         return;
+      }
+      union(x, y);
+      addPair(x, y, -1, 0);
+
+      int n = alphabet.getNumClasses();
+      for (int p=0; p<numPairs; p++) {
+         long[] setA = (long[]) sets.elementAt(pairFirst[p]);
+         long[] setB = (long[]) sets.elementAt(pairSecond[p]);
+         for (int c=0; c<n; c++) {
+            if (alphabet.getRepresentative(c) < 0) continue;
+            first.stepClass(setA, firstClass[c], a);
+            second.stepClass(setB, secondClass[c], b);
+            x = id(firstIds, first, a);
+            y = id(secondIds, second, b);
+            if (find(x) == find(y)) continue;
+            if (accepting[x] != accepting[y]) {
+               counterexample = word(p, c);
+               return;
+            }
+            union(x, y);
+            addPair(x, y, p, c);
+         }
+      }
+   }
+
+   /** returns the number of the DFA state of the given automaton
+       with the given set of NFA states, numbering it if it is new */
+   private int id(Hashtable ids, BitSetNFA nfa, long[] set) {
+      StateSet key = new StateSet(set);
+      Integer id = (Integer) ids.get(key);
+      if (id != null) return id.intValue();
+      int i = sets.size();
+      if (i == parent.length) {
+         parent = grow(parent);
+         boolean[] acc = new boolean[2 * i];
+         System.arraycopy(accepting, 0, acc, 0, i);
+         accepting = acc;
+      }
+      sets.addElement(key.getBits());
+      parent[i] = i;
+      accepting[i] = nfa.isAccepting(set);
+      ids.put(key, new Integer(i));
+      return i;
+   }
+
+   /** records a pair of DFA states to explore */
+   private void addPair(int x, int y, int from, int c) {
+      if (numPairs == pairFirst.length) {
+         pairFirst = grow(pairFirst);
+         pairSecond = grow(pairSecond);
+         pairFrom = grow(pairFrom);
+         pairClass = grow(pairClass);
+      }
+      pairFirst[numPairs] = x;
+      pairSecond[numPairs] = y;
+      pairFrom[numPairs] = from;
+      pairClass[numPairs] = c;
+      numPairs++;
+   }
+
+   /** returns the word leading to the given pair, followed by
+       a letter of the given class */
+   private String word(int p, int c) {
+      int len = 1;
+      for (int q=p; pairFrom[q]>=0; q=pairFrom[q]) len++;
+      char[] w = new char[len];
+      w[--len] = (char) alphabet.getRepresentative(c);
+      for (; pairFrom[p]>=0; p=pairFrom[p]) {
+         w[--len] = (char) alphabet.getRepresentative(pairClass[p]);
+      }
+      return new String(w);
+   }
+
+   /** returns the representative of the given DFA state's block,
+       halving the path to it along the way */
+   private int find(int x) {
+      while (parent[x] != x) {
+         parent[x] = parent[parent[x]];
+         x = parent[x];
+      }
+      return x;
+   }
+
+   /** merges the blocks of the given DFA states */
+   private void union(int x, int y) { parent[find(x)] = find(y); }
+
+   /** returns a copy of the given array with twice its length */
+   private static int[] grow(int[] a) {
+      int[] b = new int[2 * a.length];
+      System.arraycopy(a, 0, b, 0, a.length);
+      return b;
+   }
+
+}
+
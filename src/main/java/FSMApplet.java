@@ -273,7 +273,7 @@ public class FSMApplet extends Applet implements ActionListener {
             if (fsm.isFinished()) return;
             step.setEnabled(false);
             restart.setEnabled(false);
-            for (int i=0; i<stepSize && !fsm.isFinished(); i++) fsm.step();
+            fsm.step(stepSize);
             refreshDisplay();
             restart.setEnabled(true);
             if (fsm.isFinished()) restart.requestFocus();
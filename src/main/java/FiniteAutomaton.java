@@ -6,10 +6,51 @@ import java.util.*;
 /** A non-deterministic finite automaton. */
 public class FiniteAutomaton extends FiniteStateMachine {
 
+   // CONSTANTS
+
+   /** memory cap in bytes of the cache of each automaton
+       built by a boolean operation */
+   public static final long PRODUCT_BYTES = 16L << 20;
+
+
    // STATE VARIABLES
 
-   /** boolean array marking whether each state is a current state */
-   private boolean[] b;
+   /** bitset marking whether each state is a current state */
+   private long[] b;
+
+   /** bitset buffer receiving the current states of the next step */
+   private long[] nextB;
+
+   /** bitset snapshot of this automaton used to simulate computations */
+   private BitSetNFA nfa;
+
+   /** table of epsilon closures, kept across snapshots */
+   private EpsilonClosure epsilon;
+
+   /** lazily determinized version of the current snapshot,
+       or null if it has not been built yet */
+   private LazyDFA dfa;
+
+   /** memory cap of the lazy DFA cache in bytes,
+       or 0 to simulate computations directly on the snapshot */
+   private long dfaBytes;
+
+   /** eviction policy of the lazy DFA cache */
+   private int dfaPolicy;
+
+   /** the lazy DFA state matching the current states */
+   private int dfaState;
+
+   /** bit-parallel version of the snapshot used for headless computations,
+       or null if the snapshot is too large */
+   private ShiftAndNFA shiftAnd;
+
+   /** the snapshot from which shiftAnd was built */
+   private BitSetNFA shiftAndNFA;
+
+   /** cache of the states reached after the prefixes of the words given
+       to headless computations, or null if they are not cached */
+   private PrefixCache prefixCache;
 
 
    // CONSTRUCTORS
@@ -26,6 +67,7 @@ public class FiniteAutomaton extends FiniteStateMachine {
       TransitionFunction function)
    {
       super(states, start, function);
+      epsilon = new EpsilonClosure(this.states, function);
       for (int i=0; i<states.length; i++) {
          if (states[i].getMetadata() == null) {
             states[i].setMetadata(new Hashtable());
@@ -41,6 +83,7 @@ public class FiniteAutomaton extends FiniteStateMachine {
    public void addState(State state) {
       super.addState(state);
       if (state.getMetadata() == null) state.setMetadata(new Hashtable());
+      epsilon.stateAdded();
       fixB();
    }
 
@@ -48,32 +91,48 @@ public class FiniteAutomaton extends FiniteStateMachine {
    public void removeState(State state) {
       synchronized (states) {
          // sever all transition function connections before removing state
-         for (int i=0; i<numStates; i++) {
-            State s = (State) states.elementAt(i);
-            for (char l=33; l<127; l++) {
-               function.removeTransition(new TransitionTuple(s, l),
-                  new TransitionTuple(state));
-            }
-         }
+         function.removeTransitionsTo(state);
       }
       super.removeState(state);
+      epsilon.invalidate();
       fixB();
    }
 
 
+   /** sets whether computations memoize each set of current states as a
+       lazily built DFA state, using a cache of at most the given number of
+       bytes with the given eviction policy (LazyDFA.FLUSH or LazyDFA.LRU);
+       a cap of 0 simulates computations directly on the NFA instead */
+   public void setLazyDFA(long maxBytes, int policy) {
+      synchronized (states) {
+         dfaBytes = maxBytes;
+         dfaPolicy = policy;
+         dfa = null;
+      }
+   }
+
+
+   /** sets whether headless computations resume from the longest prefix
+       of each word cached so far, caching at most the given number of
+       prefixes; a capacity of 0 reads every word from the start. Automata
+       small enough for a ShiftAndNFA are read from the start anyway,
+       since they read a letter faster than the cache can look one up */
+   public void setPrefixCache(int capacity) {
+      synchronized (states) {
+         prefixCache = capacity > 0 ? new PrefixCache(this, capacity) : null;
+      }
+   }
+
+
    // REQUIRED MODIFIERS
 
    /** starts a new computation with the specified word */
    public void startComputation(String word) {
       synchronized (states) {
          this.word = word;
-         b = new boolean[numStates];
-         for (int j=0; j<numStates; j++) {
-            State s = (State) states.elementAt(j);
-            b[j] = (s == start);
-         }
+         getNFA().start(b);
+         if (dfaBytes > 0) dfaState = getLazyDFA().find(b);
          step = 0;
-         makeEpsilonTransitions(b);
          answer = null;
          synchAndCheck();
       }
@@ -97,39 +156,25 @@ public class FiniteAutomaton extends FiniteStateMachine {
             return;
          }
 
+         // mark all states reachable from the current states as next states
          char l = word.charAt(step);
-         boolean[] nextB = new boolean[numStates];
-         for (int j=0; j<numStates; j++) nextB[j] = false;
-
-         // loop through each current state
-         for (int j=0; j<numStates; j++) {
-            if (b[j]) {
-               State s = (State) states.elementAt(j);
-               Vector next = function.getTransitions(
-                  new TransitionTuple(s, l));
-               if (next != null) {
-                  // mark all resultant states as next states
-                  for (int k=0; k<next.size(); k++) {
-                     TransitionTuple t = (TransitionTuple) next.elementAt(k);
-                     State ns = t.getState();
-                     nextB[states.indexOf(ns)] = true;
-                  }
-               }
-            }
+         boolean alive;
+         if (dfaBytes > 0) {
+            LazyDFA d = getLazyDFA();
+            dfaState = d.next(dfaState, l);
+            d.getSet(dfaState, nextB);
+            alive = !nfa.isDead(nextB);
          }
-
-         // make epsilon transitions from the new states
-         makeEpsilonTransitions(nextB);
+         else alive = getNFA().step(b, l, nextB);
 
          // next states become current states
+         long[] t = b;
          b = nextB;
+         nextB = t;
 
-         // check whether all non-deterministic paths have rejected
-         boolean dead = true;
-         for (int i=0; i<numStates; i++) {
-            if (b[i]) dead = false;
-         }
-         if (dead) {
+         // check whether every non-deterministic path has rejected
+         // or can no longer reach an accept state
+         if (!alive) {
             answer = new Boolean(false);
             synchAndCheck();
             return;
@@ -186,8 +231,119 @@ public class FiniteAutomaton extends FiniteStateMachine {
    }
 
 
+   // ACCESSORS
+
+   /** returns an up-to-date bitset snapshot of this automaton, rebuilding
+       it if the states or transition function have changed */
+   public BitSetNFA getNFA() {
+      synchronized (states) {
+         if (nfa == null || !nfa.isUpToDate(states, start, function)) {
+            nfa = new BitSetNFA(states, start, function, epsilon);
+            if (b == null || b.length != nfa.getWords()) fixB();
+         }
+         return nfa;
+      }
+   }
+
+   /** returns the lazy DFA built from the up-to-date bitset snapshot
+       of this automaton, rebuilding it if the snapshot has changed */
+   public LazyDFA getLazyDFA() {
+      synchronized (states) {
+         BitSetNFA n = getNFA();
+         if (dfa == null || dfa.getNFA() != n) {
+            dfa = new LazyDFA(n, dfaBytes, dfaPolicy);
+            dfaState = dfa.find(b);
+         }
+         return dfa;
+      }
+   }
+
+
+   // BOOLEAN OPERATIONS
+
+   /** returns a lazily built automaton accepting the words accepted by both
+       this finite automaton and the given one, as currently defined */
+   public ProductDFA intersection(FiniteAutomaton fa) {
+      return combine(fa, ProductDFA.INTERSECTION);
+   }
+
+   /** returns a lazily built automaton accepting the words accepted by
+       this finite automaton or the given one, as currently defined */
+   public ProductDFA union(FiniteAutomaton fa) {
+      return combine(fa, ProductDFA.UNION);
+   }
+
+   /** returns a lazily built automaton accepting the words accepted by
+       this finite automaton but not by the given one, as currently
+       defined */
+   public ProductDFA difference(FiniteAutomaton fa) {
+      return combine(fa, ProductDFA.DIFFERENCE);
+   }
+
+   /** returns a lazily built automaton accepting the words rejected by
+       this finite automaton, as currently defined */
+   public ProductDFA complement() {
+      return new ProductDFA(getNFA(), PRODUCT_BYTES, LazyDFA.LRU);
+   }
+
+   /** returns a lazily built automaton for the given boolean combination
+       (a ProductDFA operation) of this finite automaton and the given one,
+       as currently defined */
+   public ProductDFA combine(FiniteAutomaton fa, int op) {
+      return new ProductDFA(getNFA(), fa.getNFA(), op,
+         PRODUCT_BYTES, LazyDFA.LRU);
+   }
+
+
+   // ANALYSIS
+
+   /** returns a shortest word accepted by exactly one of this finite
+       automaton and the given one, or null if they accept the same
+       language */
+   public String distinguish(FiniteAutomaton fa) {
+      return new Equivalence(this, fa).getCounterexample();
+   }
+
+   /** returns a word accepted by this finite automaton but not by the
+       given one, or null if the given one accepts every word this one
+       accepts */
+   public String findWordNotIn(FiniteAutomaton fa) {
+      return new Inclusion(this, fa).getCounterexample();
+   }
+
+   /** returns a new finite automaton accepting the same language as this
+       one, without its useless states and with bisimilar states merged */
+   public FiniteAutomaton reduce() { return new Reducer(this).getResult(); }
+
+   /** returns the state of an accepting run on the given word after
+       reading each of its prefixes, or null if the word is rejected */
+   public State[] explain(CharSequence word) {
+      return new Witness(this, word).getRun();
+   }
+
+
    // REQUIRED ACCESSORS
 
+   /** runs a whole computation on the given word and returns whether this
+       finite automaton accepts it, without touching the display */
+   public boolean accepts(CharSequence word) {
+      BitSetNFA n;
+      ShiftAndNFA sa;
+      PrefixCache pc;
+      synchronized (states) {
+         pc = prefixCache;
+         n = getNFA();
+         if (shiftAndNFA != n) {
+            // small automata run faster with one long per set of states
+            shiftAnd = ShiftAndNFA.create(n);
+            shiftAndNFA = n;
+         }
+         sa = shiftAnd;
+      }
+      if (sa != null) return sa.accepts(word);
+      return pc == null ? n.accepts(word) : pc.accepts(n, word);
+   }
+
    /** returns a set of strings representing the transitions from the given
        source state to the given destination state */
    protected String[] getTransitionStrings(State source, State dest) {
@@ -200,16 +356,18 @@ public class FiniteAutomaton extends FiniteStateMachine {
 
    // HELPER METHODS
 
-   /** adjusts the size of the current state array if
+   /** adjusts the size of the current state bitsets if
        the number of states has changed */
    private void fixB() {
       synchronized (states) {
-         boolean[] newB = new boolean[numStates];
+         int words = (numStates + 63) / 64;
+         long[] newB = new long[words];
          for (int i=0; i<numStates; i++) {
             State s = (State) states.elementAt(i);
-            newB[i] = s.isCurrent();
+            if (s.isCurrent()) BitSetNFA.set(newB, i);
          }
          b = newB;
+         nextB = new long[words];
       }
    }
 
@@ -218,59 +376,25 @@ public class FiniteAutomaton extends FiniteStateMachine {
    private void synchAndCheck() {
       for (int i=0; i<numStates; i++) {
          State s = (State) states.elementAt(i);
-         s.setCurrent(b[i]);
+         s.setCurrent(BitSetNFA.contains(b, i));
       }
 
-      // check if computation is at the end of the word
+      // check if computation is at the end of the word;
+      // if any current states are accept states, accept
       if (step == word.length()) {
-         // if any current states are accept states, accept
-         for (int i=0; i<numStates; i++) {
-            if (b[i]) {
-               State s = (State) states.elementAt(i);
-               if (s.isAccept()) {
-                  answer = new Boolean(true);
-                  repaint();
-                  return;
-               }
-            }
-         }
+         answer = new Boolean(nfa.isAccepting(b));
+      }
 
-         // otherwise, reject
-         answer = new Boolean(false);
+      // otherwise stop as soon as the rest of the word cannot change
+      // the outcome
+      else if (nfa.isDead(b)) answer = new Boolean(false);
+      else if (nfa.isUniversal(b)) {
+         answer = new Boolean(nfa.getAlphabet().covers(word, step));
       }
 
       // redraw state diagram
       repaint();
    }
 
-   /** modifies the current states to include any states accessible through
-       epsilon transitions */
-   private void makeEpsilonTransitions(boolean[] b) {
-      boolean changed = true;
-      // loop through current states until new states stop getting added
-      while (changed) {
-         changed = false;
-         for (int i=0; i<numStates; i++) {
-            if (b[i]) {
-               State s = (State) states.elementAt(i);
-               Vector eps = function.getTransitions(
-                  new TransitionTuple(s, EPSILON));
-               if (eps != null) {
-                  // mark all resultant states as current states
-                  for (int j=0; j<eps.size(); j++) {
-                     TransitionTuple t = (TransitionTuple) eps.elementAt(j);
-                     State ns = t.getState();
-                     int q = states.indexOf(ns);
-                     if (!b[q]) {
-                        changed = true;
-                        b[q] = true;
-                     }
-                  }
-               }
-            }
-         }
-      }
-   }
-
 }
 
@@ -374,6 +374,12 @@ public abstract class FiniteStateMachine extends Component
    /** restarts the current computation */
    public void restartComputation() { startComputation(word); }
 
+   /** advances the current computation the given number of steps at a
+       time, stopping early if it finishes */
+   public void step(int n) {
+      for (int i=0; i<n && !isFinished(); i++) step();
+   }
+
 
    // ABSTRACT MODIFIERS
 
@@ -432,6 +438,13 @@ public abstract class FiniteStateMachine extends Component
        source state to the given destination state */
    protected abstract String[] getTransitionStrings(State source, State dest);
 
+   /** runs a whole computation on the given word and returns whether this
+       finite state machine accepts it. Unlike startComputation and step,
+       this leaves the current computation, the states' current flags and
+       the state diagram alone, so it is safe to call from any thread and
+       with java.awt.headless=true */
+   public abstract boolean accepts(CharSequence word);
+
 
    // EVENT HANDLING
 
@@ -0,0 +1,189 @@
+// Inclusion.java
+
+import java.util.*;
+
+/** Decides whether every word accepted by one finite automaton is also
+    accepted by another, without determinizing the first and without
+    building all the DFA states of the second. The search explores pairs
+    of a state of the first automaton and a set of states of the second
+    reached by the same word; a pair whose set is a superset of the set of
+    another pair with the same state cannot lead to a counterexample that
+    the other pair would not lead to sooner, so only an antichain of pairs
+    with minimal sets is kept. Pairs are explored breadth first, so
+    counterexamples tend to be short, though pruning can make them longer
+    than necessary. */
+public class Inclusion {
+
+   // STATE VARIABLES
+
+   /** the automaton whose language should be included */
+   private BitSetNFA first;
+
+   /** the automaton whose language should include it */
+   private BitSetNFA second;
+
+   /** common refinement of the letter classes of both automata */
+   private Alphabet alphabet;
+
+   /** letter class of each automaton for each common letter class */
+   private int[] firstClass, secondClass;
+
+   /** minimal pairs found so far for each state of the first automaton,
+       as a Vector of pair numbers */
+   private Vector[] antichain;
+
+   /** state of the first automaton of each pair */
+   private int[] pairState = new int[64];
+
+   /** set of states of the second automaton of each pair */
+   private Vector pairSet = new Vector();
+
+   /** pair from which each pair was reached, or -1 */
+   private int[] pairFrom = new int[64];
+
+   /** common letter class read to reach each pair */
+   private int[] pairClass = new int[64];
+
+   /** whether each pair has been pruned by a smaller one */
+   private boolean[] pruned = new boolean[64];
+
+   /** number of pairs found */
+   private int numPairs;
+
+   /** a word accepted by the first automaton but not the second,
+       or null if there is none */
+   private String counterexample;
+
+
+   // CONSTRUCTORS
+
+   /** checks whether the language of a snapshot of the first given finite
+       automaton is included in that of the second */
+   public Inclusion(FiniteAutomaton a, FiniteAutomaton b) {
+      this(a.getNFA(), b.getNFA());
+   }
+
+   /** checks whether the language of the first given automaton snapshot
+       is included in that of the second */
+   public Inclusion(BitSetNFA first, BitSetNFA second) {
+      this.first = first;
+      this.second = second;
+      alphabet = Alphabet.join(first.getAlphabet(), second.getAlphabet());
+      firstClass = alphabet.project(first.getAlphabet());
+      secondClass = alphabet.project(second.getAlphabet());
+      antichain = new Vector[first.getNumStates()];
+      for (int i=0; i<antichain.length; i++) antichain[i] = new Vector();
+      search();
+   }
+
+
+   // ACCESSORS
+
+   /** tests whether the language of the first automaton is included
+       in that of the second */
+   public boolean isIncluded() { return counterexample == null; }
+
+   /** returns a word accepted by the first automaton but not the second,
+       or null if there is none */
+   public String getCounterexample() { return counterexample; }
+
+   /** returns the number of pairs explored, including pruned ones */
+   public int getNumPairs() { return numPairs; }
+
+
+   // HELPER METHODS
+
+   /** runs the breadth-first search over pairs */
+   private void search() {
+      long[] a = first.newSet();
+      long[] b = second.newSet();
+      first.start(a);
+      second.start(b);
+      for (int i=0; i<first.getNumStates(); i++) {
+         if (BitSetNFA.contains(a, i) && add(i, b, -1, 0)) return;
+      }
+
+      int n = alphabet.getNumClasses();
+      int[] succ = new int[first.getNumStates()];
+      for (int p=0; p<numPairs; p++) {
+         if (pruned[p]) continue;
+         long[] set = (long[]) pairSet.elementAt(p);
+         for (int c=1; c<n; c++) {
+            if (alphabet.getRepresentative(c) < 0) continue;
+            int m = first.successors(pairState[p], firstClass[c], succ);
+            if (m == 0) continue;
+            second.stepClass(set, secondClass[c], b);
+            for (int j=0; j<m; j++) {
+               if (add(succ[j], b, p, c)) return;
+            }
+         }
+      }
+   }
+
+   /** adds the pair of the given state and set unless a pair in the
+       antichain subsumes it, returning true if it is a counterexample */
+   private boolean add(int state, long[] set, int from, int c) {
+      Vector v = antichain[state];
+      for (int k=0; k<v.size(); k++) {
+         int q = ((Integer) v.elementAt(k)).intValue();
+         if (subset((long[]) pairSet.elementAt(q), set)) return false;
+      }
+      if (numPairs == pairState.length) grow();
+      int p = numPairs++;
+      pairState[p] = state;
+      pairSet.addElement(set.clone());
+      pairFrom[p] = from;
+      pairClass[p] = c;
+      if (first.isAccept(state) && !second.isAccepting(set)) {
+         counterexample = word(p);
+         return true;
+      }
+
+      // pairs with larger sets are now redundant
+      for (int k=v.size()-1; k>=0; k--) {
+         int q = ((Integer) v.elementAt(k)).intValue();
+         if (subset(set, (long[]) pairSet.elementAt(q))) {
+            pruned[q] = true;
+            v.removeElementAt(k);
+         }
+      }
+      v.addElement(new Integer(p));
+      return false;
+   }
+
+   /** tests whether the first given set is a subset of the second */
+   private static boolean subset(long[] s, long[] t) {
+      for (int w=0; w<s.length; w++) {
+         if ((s[w] & ~t[w]) != 0) return false;
+      }
+      return true;
+   }
+
+   /** returns the word leading to the given pair */
+   private String word(int p) {
+      int len = 0;
+      for (int q=p; pairFrom[q]>=0; q=pairFrom[q]) len++;
+      char[] w = new char[len];
+      for (; pairFrom[p]>=0; p=pairFrom[p]) {
+         w[--len] = (char) alphabet.getRepresentative(pairClass[p]);
+      }
+      return new String(w);
+   }
+
+   /** doubles the capacity of the pair arrays */
+   private void grow() {
+      int n = pairState.length;
+      int[] s = new int[2 * n], f = new int[2 * n], c = new int[2 * n];
+      boolean[] pr = new boolean[2 * n];
+      System.arraycopy(pairState, 0, s, 0, n);
+      System.arraycopy(pairFrom, 0, f, 0, n);
+      System.arraycopy(pairClass, 0, c, 0, n);
+      System.arraycopy(pruned, 0, pr, 0, n);
+      pairState = s;
+      pairFrom = f;
+      pairClass = c;
+      pruned = pr;
+   }
+
+}
+
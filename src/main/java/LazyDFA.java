@@ -0,0 +1,374 @@
+// LazyDFA.java
+
+import java.util.*;
+
+/** A deterministic automaton built lazily from a BitSetNFA by memoizing each
+    distinct set of current states as a DFA state, along with its
+    transitions, the first time it is encountered. The memory used by the
+    cache is capped; when it fills up, either the whole cache is flushed or
+    the least recently used DFA state is evicted, so that a pathological
+    automaton cannot exhaust the heap the way full determinization would.
+    The cache starts small and doubles as states are added, so the cap
+    is only reached by automata that need it.
+
+    State numbers are only guaranteed to remain valid until the next call
+    to next() or find(), since those calls may evict states from the cache.
+    Subclasses may determinize something other than a single BitSetNFA by
+    overriding the methods that start, step and test a set of states.
+    This class is not thread-safe. */
+public class LazyDFA {
+
+   // CONSTANTS
+
+   /** number of cache slots allocated at first */
+   private static final int INITIAL_SLOTS = 16;
+
+   /** eviction policy that empties the whole cache when it fills up */
+   public static final int FLUSH = 0;
+
+   /** eviction policy that evicts the least recently used DFA state */
+   public static final int LRU = 1;
+
+
+   // STATE VARIABLES
+
+   /** the automaton being determinized, or null in a subclass */
+   private BitSetNFA nfa;
+
+   /** equivalence classes of the letters */
+   private Alphabet alphabet;
+
+   /** number of longs in each set of states */
+   private int words;
+
+   /** eviction policy (FLUSH or LRU) */
+   private int policy;
+
+   /** number of letter classes */
+   private int cols;
+
+   /** maximum number of DFA states in the cache */
+   private int capacity;
+
+   /** number of cache slots allocated, doubled as needed up to capacity */
+   private int slots;
+
+   /** number of cache slots in use */
+   private int used;
+
+   /** set of NFA states represented by each slot */
+   private long[][] sets;
+
+   /** whether each slot's set includes an accept state */
+   private boolean[] accepting;
+
+   /** generation of each slot, incremented whenever the slot is reused */
+   private int[] stamp;
+
+   /** cached transitions, one row of cols entries for each slot, or -1 */
+   private int[] trans;
+
+   /** generation of each transition's destination when it was cached */
+   private int[] transStamp;
+
+   /** hash table buckets, holding the first slot of each chain, or -1 */
+   private int[] buckets;
+
+   /** next slot in each slot's hash chain, or -1 */
+   private int[] chain;
+
+   /** hash code of each slot's set */
+   private int[] hash;
+
+   /** more and less recently used neighbors of each slot, or -1 */
+   private int[] newer, older;
+
+   /** most and least recently used slots, or -1 */
+   private int newest, oldest;
+
+   /** scratch set receiving the result of an NFA step */
+   private long[] scratch;
+
+   /** number of transitions found in the cache */
+   private long hits;
+
+   /** number of transitions computed from the NFA */
+   private long misses;
+
+   /** number of times the whole cache has been flushed */
+   private int flushes;
+
+
+   // CONSTRUCTORS
+
+   /** constructs a lazily determinized version of the given automaton,
+       whose cache uses at most (roughly) the given number of bytes and
+       evicts states according to the given policy (FLUSH or LRU) */
+   public LazyDFA(BitSetNFA nfa, long maxBytes, int policy) {
+      this(nfa.getAlphabet(), nfa.getWords(), maxBytes, policy);
+      this.nfa = nfa;
+   }
+
+   /** constructs an empty cache for a subclass whose sets of states have
+       the given number of longs, over the given alphabet */
+   protected LazyDFA(Alphabet alphabet, int words, long maxBytes, int policy) {
+      this.alphabet = alphabet;
+      this.words = words;
+      this.policy = policy;
+      cols = alphabet.getNumClasses();
+      long slotBytes = 8 * (words + cols) + 4 * 8 + 32;
+      long max = maxBytes / slotBytes;
+      if (max < 2) max = 2;
+      if (max > 1 << 24) max = 1 << 24;
+
+      // the transition table must fit in one array
+      long maxTrans = (Integer.MAX_VALUE - 8) / cols;
+      if (max > maxTrans) max = maxTrans;
+      capacity = (int) max;
+
+      // the slots are allocated as they are needed
+      slots = Math.min(capacity, INITIAL_SLOTS);
+      buckets = new int[tableSize(slots)];
+      sets = new long[slots][];
+      accepting = new boolean[slots];
+      stamp = new int[slots];
+      trans = new int[slots * cols];
+      transStamp = new int[slots * cols];
+      chain = new int[slots];
+      hash = new int[slots];
+      newer = new int[slots];
+      older = new int[slots];
+      scratch = new long[words];
+      flush();
+      flushes = 0;
+   }
+
+
+   // SIMULATION
+
+   /** returns the DFA state before any letters are read */
+   public int start() {
+      startSet(scratch);
+      return find(scratch);
+   }
+
+   /** returns the DFA state reached from the given state
+       by reading the given letter */
+   public int next(int state, char l) {
+      return nextClass(state, alphabet.classOf(l));
+   }
+
+   /** returns the DFA state reached from the given state
+       by reading a letter of the given class */
+   public int nextClass(int state, int c) {
+      int e = state * cols + c;
+      int t = trans[e];
+      if (t >= 0 && transStamp[e] == stamp[t]) {
+         hits++;
+         touch(t);
+         return t;
+      }
+      misses++;
+      stepSet(sets[state], c, scratch);
+      int gen = stamp[state];
+      int flushed = flushes;
+      t = find(scratch);
+
+      // cache the transition, unless the source state was just evicted
+      if (flushes == flushed && stamp[state] == gen) {
+         trans[e] = t;
+         transStamp[e] = stamp[t];
+      }
+      return t;
+   }
+
+   /** returns the DFA state representing the given set of NFA states,
+       adding it to the cache if needed */
+   public int find(long[] set) {
+      int h = Arrays.hashCode(set);
+      int mask = buckets.length - 1;
+      for (int s=buckets[h & mask]; s>=0; s=chain[s]) {
+         if (hash[s] == h && Arrays.equals(sets[s], set)) {
+            touch(s);
+            return s;
+         }
+      }
+
+      // allocate a slot for the new DFA state
+      int s;
+      if (used == slots && slots < capacity) {
+         grow((int) Math.min(2L * slots, capacity));
+         mask = buckets.length - 1;
+      }
+      if (used < slots) s = used++;
+      else if (policy == LRU) {
+         s = oldest;
+         unlink(s);
+         unchain(s);
+         stamp[s]++;
+         for (int c=0; c<cols; c++) trans[s * cols + c] = -1;
+      }
+      else {
+         flush();
+         s = used++;
+      }
+
+      if (sets[s] == null) sets[s] = new long[words];
+      System.arraycopy(set, 0, sets[s], 0, words);
+      accepting[s] = isAcceptingSet(set);
+      hash[s] = h;
+      chain[s] = buckets[h & mask];
+      buckets[h & mask] = s;
+      if (policy == LRU) link(s);
+      return s;
+   }
+
+   /** tests whether the given DFA state is an accept state */
+   public boolean isAccept(int state) { return accepting[state]; }
+
+   /** copies the set of NFA states represented by
+       the given DFA state into the given bitset */
+   public void getSet(int state, long[] set) {
+      System.arraycopy(sets[state], 0, set, 0, set.length);
+   }
+
+   /** runs this automaton over the given word, returning whether it accepts */
+   public boolean accepts(CharSequence word) {
+      int s = start();
+      int len = word.length();
+      for (int i=0; i<len; i++) s = next(s, word.charAt(i));
+      return accepting[s];
+   }
+
+
+   // ACCESSORS
+
+   /** returns the automaton being determinized,
+       or null if this is a subclass determinizing something else */
+   public BitSetNFA getNFA() { return nfa; }
+
+   /** returns the equivalence classes of the letters */
+   public Alphabet getAlphabet() { return alphabet; }
+
+   /** returns the number of longs in each set of states */
+   public int getWords() { return words; }
+
+   /** returns the maximum number of DFA states held in the cache */
+   public int getCapacity() { return capacity; }
+
+   /** returns the number of DFA states currently in the cache */
+   public int getSize() { return used; }
+
+   /** returns the number of transitions found in the cache */
+   public long getHits() { return hits; }
+
+   /** returns the number of transitions computed from the NFA */
+   public long getMisses() { return misses; }
+
+   /** returns the number of times the whole cache has been flushed */
+   public int getFlushes() { return flushes; }
+
+
+   // OVERRIDABLE METHODS
+
+   /** stores the set of states current before any letters are read
+       into the given set */
+   protected void startSet(long[] set) { nfa.start(set); }
+
+   /** stores the set of states reached from the given set by reading
+       a letter of the given class into the other given set */
+   protected void stepSet(long[] set, int c, long[] next) {
+      nfa.stepClass(set, c, next);
+   }
+
+   /** tests whether the given set of states is accepting */
+   protected boolean isAcceptingSet(long[] set) {
+      return nfa.isAccepting(set);
+   }
+
+
+   // HELPER METHODS
+
+   /** empties the cache */
+   private void flush() {
+      Arrays.fill(buckets, -1);
+      Arrays.fill(trans, -1);
+      used = 0;
+      newest = oldest = -1;
+      flushes++;
+   }
+
+   /** enlarges the slot arrays to the given number of slots, rehashing
+       the slots in use */
+   private void grow(int n) {
+      int old = slots;
+      slots = n;
+      sets = Arrays.copyOf(sets, n);
+      accepting = Arrays.copyOf(accepting, n);
+      stamp = Arrays.copyOf(stamp, n);
+      trans = Arrays.copyOf(trans, n * cols);
+      Arrays.fill(trans, old * cols, n * cols, -1);
+      transStamp = Arrays.copyOf(transStamp, n * cols);
+      chain = Arrays.copyOf(chain, n);
+      hash = Arrays.copyOf(hash, n);
+      newer = Arrays.copyOf(newer, n);
+      older = Arrays.copyOf(older, n);
+      buckets = new int[tableSize(n)];
+      Arrays.fill(buckets, -1);
+      int mask = buckets.length - 1;
+      for (int s=0; s<used; s++) {
+         chain[s] = buckets[hash[s] & mask];
+         buckets[hash[s] & mask] = s;
+      }
+   }
+
+   /** returns the number of hash table buckets for the given number of
+       slots: the smallest power of two at least twice as large */
+   private static int tableSize(int n) {
+      int size = 1;
+      while (size < 2 * n) size <<= 1;
+      return size;
+   }
+
+   /** marks the given slot as the most recently used */
+   private void touch(int s) {
+      if (policy != LRU || s == newest) return;
+      unlink(s);
+      link(s);
+   }
+
+   /** adds the given slot to the recently used list as the newest slot */
+   private void link(int s) {
+      older[s] = newest;
+      newer[s] = -1;
+      if (newest >= 0) newer[newest] = s;
+      else oldest = s;
+      newest = s;
+   }
+
+   /** removes the given slot from the recently used list */
+   private void unlink(int s) {
+      int n = newer[s], o = older[s];
+      if (o >= 0) newer[o] = n;
+      else oldest = n;
+      if (n >= 0) older[n] = o;
+      else newest = o;
+   }
+
+   /** removes the given slot from its hash chain */
+   private void unchain(int s) {
+      int b = hash[s] & (buckets.length - 1);
+      if (buckets[b] == s) {
+         buckets[b] = chain[s];
+         return;
+      }
+      for (int p=buckets[b]; p>=0; p=chain[p]) {
+         if (chain[p] == s) {
+            chain[p] = chain[s];
+            return;
+         }
+      }
+   }
+
+}
+
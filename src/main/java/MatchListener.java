@@ -0,0 +1,11 @@
+// MatchListener.java
+
+/** A callback receiving the matches found by a MatchScanner. */
+public interface MatchListener {
+
+   /** called for each match, with the index of its first character and
+       the index just past its last character */
+   void match(int start, int end);
+
+}
+
@@ -0,0 +1,194 @@
+// MatchScanner.java
+
+/** Scans a text for the substrings accepted by a finite automaton, treating
+    the automaton as a pattern that may begin at any position. A new
+    computation path is started at every position (as though the start
+    state had a self-loop on every letter), and each current state
+    remembers the leftmost position at which one of its paths started,
+    so matches are found in a forward pass over the text.
+
+    With ALL_MATCHES, the text is read exactly once. With LEFTMOST_LONGEST,
+    the scan for a match goes on past the longest match found so far as
+    long as some path that could still extend it is alive, and the scan
+    for the next match starts over at the end of the reported match, so
+    that stretch of text is read again. Each letter costs time linear in
+    the number of moves of the automaton, but in the worst case the number
+    of letters read is quadratic in the length of the text: for the
+    pattern a*b|a, a text of n a's is read n times over from successive
+    positions, about n*n/2 letters in all. If no path outlives the end of
+    the match found so far by more than k letters, each letter is read at
+    most k + 1 times. */
+public class MatchScanner {
+
+   // CONSTANTS
+
+   /** reports non-overlapping matches, choosing the leftmost match and then
+       the longest match starting there; after each match the scan resumes
+       at its end, so text read while looking for a longer match is read
+       again, quadratic in the length of the text in the worst case */
+   public static final int LEFTMOST_LONGEST = 0;
+
+   /** reports every position at which a match ends, with the leftmost
+       start of a match ending there, in a single pass over the text */
+   public static final int ALL_MATCHES = 1;
+
+
+   // STATE VARIABLES
+
+   /** the automaton */
+   private BitSetNFA nfa;
+
+   /** match semantics (LEFTMOST_LONGEST or ALL_MATCHES) */
+   private int mode;
+
+   /** states current before any letters are read */
+   private int[] startStates;
+
+   /** current states, in order of nondecreasing start position */
+   private int[] cur, next;
+
+   /** number of current states */
+   private int count;
+
+   /** bitsets of the current and next states */
+   private long[] curSet, nextSet;
+
+   /** leftmost start position of each current and next state */
+   private int[] curStart, nextStart;
+
+   /** buffer of successor states */
+   private int[] succ;
+
+
+   // CONSTRUCTORS
+
+   /** constructs a scanner for a snapshot of the given finite automaton,
+       with the given match semantics */
+   public MatchScanner(FiniteAutomaton fa, int mode) {
+      this(fa.getNFA(), mode);
+   }
+
+   /** constructs a scanner for the given automaton snapshot,
+       with the given match semantics */
+   public MatchScanner(BitSetNFA nfa, int mode) {
+      this.nfa = nfa;
+      this.mode = mode;
+      int n = nfa.getNumStates();
+      cur = new int[n];
+      next = new int[n];
+      curStart = new int[n];
+      nextStart = new int[n];
+      succ = new int[n];
+      curSet = nfa.newSet();
+      nextSet = nfa.newSet();
+      long[] set = nfa.newSet();
+      nfa.start(set);
+      int k = 0;
+      for (int i=0; i<n; i++) if (BitSetNFA.contains(set, i)) k++;
+      startStates = new int[k];
+      k = 0;
+      for (int i=0; i<n; i++) {
+         if (BitSetNFA.contains(set, i)) startStates[k++] = i;
+      }
+   }
+
+
+   // SCANNING
+
+   /** scans the given text, reporting each match to the given listener */
+   public void scan(CharSequence text, MatchListener listener) {
+      int len = text.length();
+      int pos = 0;
+      while (pos <= len) {
+         clear();
+         int ms = -1, me = -1;
+         int i = pos;
+         while (true) {
+            // start a new path here, unless a match has been found already
+            if (ms < 0 || mode == ALL_MATCHES) seed(i);
+
+            int as = acceptStart();
+            if (as >= 0) {
+               if (mode == ALL_MATCHES) listener.match(as, i);
+               else if (ms < 0 || as <= ms) {
+                  ms = as;
+                  me = i;
+               }
+            }
+            if (i == len || count == 0) break;
+
+            // paths starting right of a match found already are useless
+            advance(text.charAt(i), mode == ALL_MATCHES ? -1 : ms);
+            i++;
+         }
+         if (mode == ALL_MATCHES || ms < 0) return;
+         listener.match(ms, me);
+         pos = me > ms ? me : me + 1;
+      }
+   }
+
+
+   // HELPER METHODS
+
+   /** empties the set of current states */
+   private void clear() {
+      for (int k=0; k<count; k++) curSet[cur[k] >> 6] = 0;
+      count = 0;
+   }
+
+   /** adds the start states not yet current, with the given start position;
+       since it is the largest start so far, the order is preserved */
+   private void seed(int i) {
+      for (int k=0; k<startStates.length; k++) {
+         int s = startStates[k];
+         if (BitSetNFA.contains(curSet, s)) continue;
+         BitSetNFA.set(curSet, s);
+         curStart[s] = i;
+         cur[count++] = s;
+      }
+   }
+
+   /** returns the leftmost start position of the current accept states,
+       or -1 if no current state is an accept state */
+   private int acceptStart() {
+      for (int k=0; k<count; k++) {
+         if (nfa.isAccept(cur[k])) return curStart[cur[k]];
+      }
+      return -1;
+   }
+
+   /** reads one letter, dropping paths that started right of the given
+       position (if it is not negative); since the current states are
+       visited in order of start position, the first path to reach a state
+       is the one that started leftmost */
+   private void advance(char c, int limit) {
+      int l = nfa.getAlphabet().classOf(c);
+      int n = 0;
+      for (int k=0; k<count; k++) {
+         int s = cur[k];
+         curSet[s >> 6] = 0;
+         int start = curStart[s];
+         if (limit >= 0 && start > limit) continue;
+         int m = nfa.successors(s, l, succ);
+         for (int j=0; j<m; j++) {
+            int t = succ[j];
+            if (BitSetNFA.contains(nextSet, t)) continue;
+            BitSetNFA.set(nextSet, t);
+            nextStart[t] = start;
+            next[n++] = t;
+         }
+      }
+      int[] t = cur;
+      cur = next;
+      next = t;
+      t = curStart;
+      curStart = nextStart;
+      nextStart = t;
+      long[] set = curSet;
+      curSet = nextSet;
+      nextSet = set;
+      count = n;
+   }
+
+}
+
@@ -0,0 +1,86 @@
+// NFAMatcher.java
+
+import java.nio.ByteBuffer;
+
+/** An incremental matcher simulating a non-deterministic finite automaton
+    over a pair of state bitsets. */
+public class NFAMatcher extends StreamMatcher {
+
+   // STATE VARIABLES
+
+   /** the automaton */
+   private BitSetNFA nfa;
+
+   /** current states */
+   private long[] cur;
+
+   /** buffer receiving the next current states */
+   private long[] next;
+
+   /** whether every computation path has rejected
+       or can no longer reach an accept state */
+   private boolean dead;
+
+
+   // CONSTRUCTORS
+
+   /** constructs a matcher for a snapshot of the given finite automaton */
+   public NFAMatcher(FiniteAutomaton fa) { this(fa.getNFA()); }
+
+   /** constructs a matcher for the given automaton snapshot */
+   public NFAMatcher(BitSetNFA nfa) {
+      this.nfa = nfa;
+      cur = nfa.newSet();
+      next = nfa.newSet();
+      reset();
+   }
+
+
+   // REQUIRED METHODS
+
+   /** feeds the given range of characters to the matcher */
+   public void feed(char[] buf, int off, int len) {
+      position += len;
+      if (dead) return;
+      for (int i=off; i<off+len; i++) {
+         if (!advance(buf[i])) return;
+      }
+   }
+
+   /** feeds the given range of bytes to the matcher, by absolute index
+       and without changing the buffer's position */
+   public void feed(ByteBuffer buf, int off, int len) {
+      position += len;
+      if (dead) return;
+      for (int i=off; i<off+len; i++) {
+         if (!advance((char) (buf.get(i) & 0xff))) return;
+      }
+   }
+
+   /** returns whether the automaton accepts the characters fed so far */
+   public boolean finish() { return !dead && nfa.isAccepting(cur); }
+
+   /** starts over with an empty word */
+   public void reset() {
+      nfa.start(cur);
+      dead = nfa.isDead(cur);
+      position = 0;
+   }
+
+
+   // HELPER METHODS
+
+   /** reads one letter, returning false if every path has now rejected */
+   private boolean advance(char l) {
+      if (!nfa.step(cur, l, next)) {
+         dead = true;
+         return false;
+      }
+      long[] t = cur;
+      cur = next;
+      next = t;
+      return true;
+   }
+
+}
+
@@ -0,0 +1,298 @@
+// PDARun.java
+
+import java.util.*;
+
+/** A computation of a pushdown automaton snapshot, keeping the set of all
+    configurations it can be in on a graph-structured stack. After each
+    letter, all configurations with the same state and the same top symbol
+    are merged into one whose stack node lies over all of their stacks
+    below, so there are never more configurations than states times
+    symbols, and a node reached again by a cycle of moves that push is
+    simply placed below itself. The tables used to merge configurations
+    are dropped after each letter; the stack nodes only point down, so
+    nodes that no current configuration reaches are garbage.
+
+    A computation also works within two budgets: a move that would push
+    onto a stack node first reached at the maximum depth is dropped, and a
+    set that grows past the maximum number of configurations ends the
+    computation. Either way the computation may have missed an accepting
+    branch, so unless it accepts anyway, its result is UNDECIDED rather
+    than REJECTED. */
+public class PDARun {
+
+   // CONSTANTS
+
+   /** result of a computation that rejects */
+   public static final int REJECTED = 0;
+
+   /** result of a computation that accepts */
+   public static final int ACCEPTED = 1;
+
+   /** result of a computation that exceeded its budgets before it
+       could accept */
+   public static final int UNDECIDED = 2;
+
+
+   // STATE VARIABLES
+
+   /** the automaton */
+   private SharedStackPDA pda;
+
+   /** maximum number of symbols on a stack */
+   private int maxDepth;
+
+   /** maximum number of configurations */
+   private int maxConfigs;
+
+   /** the empty stack, at the bottom of every stack of the computation */
+   private SharedStack bottom;
+
+   /** Vector of the current configurations */
+   private Vector configs;
+
+   /** configurations of the letter being read, by state and top symbol */
+   private Hashtable table;
+
+   /** Vector of the configurations of the letter being read that must get
+       every stack added below each stack node of that letter */
+   private Hashtable copies;
+
+   /** pending configurations of the letter being read, each with a stack
+       newly added below it, or with null if the configuration is new */
+   private Configuration[] workConfig = new Configuration[16];
+   private SharedStack[] workBelow = new SharedStack[16];
+
+   /** number of pending configurations */
+   private int work;
+
+   /** whether some move was dropped for pushing past the maximum depth */
+   private boolean cut;
+
+   /** whether the maximum number of configurations was exceeded */
+   private boolean exceeded;
+
+
+   // CONSTRUCTOR
+
+   /** starts a computation of the given automaton snapshot, before any
+       letters are read, within the given budgets */
+   public PDARun(SharedStackPDA pda, int maxDepth, int maxConfigs) {
+      this.pda = pda;
+      this.maxDepth = maxDepth;
+      this.maxConfigs = maxConfigs;
+      bottom = new SharedStack();
+      begin();
+      int s = pda.getStart();
+      if (s >= 0) addEmpty(s);
+      end();
+   }
+
+
+   // SIMULATION
+
+   /** makes every move reading the given letter from every configuration,
+       followed by any epsilon moves, and returns whether any
+       configurations are left */
+   public boolean step(char l) {
+      Vector last = configs;
+      begin();
+      for (int i=0; i<last.size() && !exceeded; i++) {
+         Configuration c = (Configuration) last.elementAt(i);
+         int p = c.getState();
+         SharedStack n = c.getStack();
+         int moves = pda.getNumMoves(p);
+         for (int k=0; k<moves && !exceeded; k++) {
+            if (pda.getLetter(p, k) != l) continue;
+            char po = pda.getPop(p, k);
+            if (po == FiniteStateMachine.EPSILON) {
+               apply(pda.getDest(p, k), pda.getPush(p, k), n);
+               continue;
+            }
+            if (n.isEmpty() || n.peek() != po) continue;
+            for (int j=0; j<n.getNumBelow(); j++) {
+               apply(pda.getDest(p, k), pda.getPush(p, k), n.getBelow(j));
+            }
+         }
+      }
+      end();
+      return configs.size() > 0;
+   }
+
+   /** reads the given word and returns the result of the computation */
+   public int run(CharSequence word) {
+      int len = word.length();
+      for (int i=0; i<len; i++) {
+         if (!step(word.charAt(i))) break;
+      }
+      return getResult();
+   }
+
+
+   // ACCESSORS
+
+   /** returns the result of the computation if the word ends after the
+       letters read so far */
+   public int getResult() {
+      for (int i=0; i<configs.size(); i++) {
+         Configuration c = (Configuration) configs.elementAt(i);
+         if (pda.isAccept(c.getState())) return ACCEPTED;
+      }
+      return cut || exceeded ? UNDECIDED : REJECTED;
+   }
+
+   /** returns the current configurations */
+   public Vector getConfigurations() { return configs; }
+
+   /** returns the automaton snapshot */
+   public SharedStackPDA getPDA() { return pda; }
+
+   /** tests whether some move was dropped for pushing
+       past the maximum depth */
+   public boolean isCut() { return cut; }
+
+   /** tests whether the maximum number of configurations was exceeded */
+   public boolean isExceeded() { return exceeded; }
+
+
+   // HELPER METHODS
+
+   /** starts building the configurations after the next letter */
+   private void begin() {
+      configs = new Vector();
+      table = new Hashtable();
+      copies = new Hashtable();
+   }
+
+   /** makes every epsilon move from the configurations being built,
+       then drops the tables used to merge them */
+   private void end() {
+      while (work > 0 && !exceeded) {
+         work--;
+         Configuration c = workConfig[work];
+         SharedStack b = workBelow[work];
+         workConfig[work] = null;
+         workBelow[work] = null;
+         int p = c.getState();
+         SharedStack n = c.getStack();
+         int moves = pda.getNumMoves(p);
+         if (b == null) {
+            // a new configuration makes the moves that do not pop
+            for (int k=0; k<moves && !exceeded; k++) {
+               if (pda.getLetter(p, k) != FiniteStateMachine.EPSILON ||
+                  pda.getPop(p, k) != FiniteStateMachine.EPSILON)
+               {
+                  continue;
+               }
+               apply(pda.getDest(p, k), pda.getPush(p, k), n);
+            }
+            continue;
+         }
+
+         // a new stack below a configuration goes to the configurations
+         // that took over its stacks, and to the moves that pop its top
+         Vector v = (Vector) copies.get(n);
+         for (int i=0; i<v.size(); i++) {
+            Configuration g = (Configuration) v.elementAt(i);
+            if (g.getStack().addBelow(b)) schedule(g, b);
+         }
+         for (int k=0; k<moves && !exceeded; k++) {
+            if (pda.getLetter(p, k) != FiniteStateMachine.EPSILON ||
+               pda.getPop(p, k) != n.peek())
+            {
+               continue;
+            }
+            apply(pda.getDest(p, k), pda.getPush(p, k), b);
+         }
+      }
+      while (work > 0) {
+         work--;
+         workConfig[work] = null;
+         workBelow[work] = null;
+      }
+      for (int i=0; i<configs.size(); i++) {
+         ((Configuration) configs.elementAt(i)).getStack().seal();
+      }
+      table = null;
+      copies = null;
+      if (exceeded) configs = new Vector();
+   }
+
+   /** adds the configurations in the given state with the given symbol
+       (or nothing) pushed onto any of the stacks of the given node */
+   private void apply(int q, char symbol, SharedStack s) {
+      if (symbol == FiniteStateMachine.EPSILON) addStacks(q, s);
+      else if (s.getDepth() >= maxDepth) cut = true;
+      else addOnto(q, symbol, s);
+   }
+
+   /** adds the configurations in the given state with any of the stacks of
+       the given node, including stacks added below it later on */
+   private void addStacks(int q, SharedStack s) {
+      if (s.isEmpty()) {
+         addEmpty(q);
+         return;
+      }
+      Configuration g = null;
+      for (int i=0; i<s.getNumBelow() && !exceeded; i++) {
+         g = addOnto(q, s.peek(), s.getBelow(i));
+      }
+      Vector v = (Vector) copies.get(s);
+      if (v != null && g != null && g.getStack() != s && !v.contains(g)) {
+         v.addElement(g);
+      }
+   }
+
+   /** adds the configurations in the given state with the given symbol
+       pushed onto any of the stacks of the given node, returning the
+       configuration they are merged into, or null if there is no room */
+   private Configuration addOnto(int q, char symbol, SharedStack s) {
+      Long key = new Long(((long) q << 17) | symbol);
+      Configuration g = (Configuration) table.get(key);
+      if (g == null) {
+         if (configs.size() == maxConfigs) {
+            exceeded = true;
+            return null;
+         }
+         SharedStack n = new SharedStack(symbol, s);
+         g = new Configuration(q, n);
+         table.put(key, g);
+         configs.addElement(g);
+         copies.put(n, new Vector());
+         schedule(g, null);
+         schedule(g, s);
+      }
+      else if (g.getStack().addBelow(s)) schedule(g, s);
+      return g;
+   }
+
+   /** adds the configuration in the given state with an empty stack */
+   private void addEmpty(int q) {
+      Long key = new Long(((long) q << 17) | 0x10000);
+      if (table.get(key) != null) return;
+      if (configs.size() == maxConfigs) {
+         exceeded = true;
+         return;
+      }
+      Configuration g = new Configuration(q, bottom);
+      table.put(key, g);
+      configs.addElement(g);
+      schedule(g, null);
+   }
+
+   /** queues the given configuration, with the given stack newly added
+       below it, or with null if the configuration is new */
+   private void schedule(Configuration c, SharedStack below) {
+      if (work == workConfig.length) {
+         Configuration[] wc = new Configuration[2 * work];
+         SharedStack[] wb = new SharedStack[2 * work];
+         System.arraycopy(workConfig, 0, wc, 0, work);
+         System.arraycopy(workBelow, 0, wb, 0, work);
+         workConfig = wc;
+         workBelow = wb;
+      }
+      workConfig[work] = c;
+      workBelow[work] = below;
+      work++;
+   }
+
+}
@@ -0,0 +1,248 @@
+// ParallelDFA.java
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.*;
+
+/** Runs a compiled automaton over a single huge input on all cores of a
+    ForkJoinPool. The input is split into chunks, and since the state in
+    which a chunk will be entered is not known until the chunks before it
+    have been read, each chunk is run speculatively from every state at
+    once, giving a mapping from entry state to exit state. The mappings
+    are composed pairwise up the tree of tasks, and the composition of all
+    of them gives the final state.
+
+    Running a chunk from every state is cheaper than it sounds: the runs
+    are advanced in lockstep, and runs that reach the same state are
+    merged, so after a few letters most automata are down to a handful of
+    distinct runs. Bytes are read as the characters 0-255. */
+public class ParallelDFA {
+
+   // CONSTANTS
+
+   /** number of characters below which an input is no longer split */
+   private static final int GRAIN = 1 << 20;
+
+   /** size of the regions in which files are memory mapped */
+   private static final long MAP_SIZE = 1L << 30;
+
+
+   // STATE VARIABLES
+
+   /** the compiled automaton */
+   private CompiledDFA dfa;
+
+   /** the pool in which chunks are run */
+   private ForkJoinPool pool;
+
+
+   // CONSTRUCTORS
+
+   /** constructs a parallel runner for a snapshot of the given finite
+       automaton, using the common ForkJoinPool */
+   public ParallelDFA(FiniteAutomaton fa) { this(new CompiledDFA(fa)); }
+
+   /** constructs a parallel runner for the given compiled automaton,
+       using the common ForkJoinPool */
+   public ParallelDFA(CompiledDFA dfa) {
+      this(dfa, ForkJoinPool.commonPool());
+   }
+
+   /** constructs a parallel runner for the given compiled automaton,
+       using the given ForkJoinPool */
+   public ParallelDFA(CompiledDFA dfa, ForkJoinPool pool) {
+      this.dfa = dfa;
+      this.pool = pool;
+   }
+
+
+   // SIMULATION
+
+   /** returns the state reached from the given state
+       by reading the given text */
+   public int run(CharSequence text, int state) {
+      int len = text.length();
+      if (len <= GRAIN || pool.getParallelism() == 1) {
+         // speculation only pays off when chunks really run in parallel
+         return runFrom(text, 0, len, state);
+      }
+      int[] map = (int[]) pool.invoke(new Task(text, 0, len, state));
+      return map[state];
+   }
+
+   /** returns whether the automaton accepts the given text */
+   public boolean accepts(CharSequence text) {
+      return dfa.isAccept(run(text, dfa.getStart()));
+   }
+
+   /** returns whether the automaton accepts the bytes of the given file,
+       memory mapping it one region at a time */
+   public boolean accepts(File file) throws IOException {
+      int state = dfa.getStart();
+      FileInputStream in = new FileInputStream(file);
+      try {
+         FileChannel channel = in.getChannel();
+         long size = channel.size();
+         for (long off=0; off<size && !dfa.isDead(state); off+=MAP_SIZE) {
+            long len = Math.min(MAP_SIZE, size - off);
+            MappedByteBuffer buf =
+               channel.map(FileChannel.MapMode.READ_ONLY, off, len);
+            state = run(new ByteText(buf, (int) len), state);
+         }
+      }
+      finally {
+         in.close();
+      }
+      return dfa.isAccept(state);
+   }
+
+
+   // ACCESSORS
+
+   /** returns the compiled automaton */
+   public CompiledDFA getDFA() { return dfa; }
+
+
+   // HELPER METHODS
+
+   /** returns the state reached from the given state by reading
+       the given range of the given text */
+   private int runFrom(CharSequence text, int from, int to, int state) {
+      Alphabet alphabet = dfa.getAlphabet();
+      for (int i=from; i<to && !dfa.isDead(state); i++) {
+         state = dfa.nextClass(state, alphabet.classOf(text.charAt(i)));
+      }
+      return state;
+   }
+
+   /** returns the state reached from each state by reading
+       the given range of the given text */
+   private int[] runAll(CharSequence text, int from, int to) {
+      Alphabet alphabet = dfa.getAlphabet();
+      int n = dfa.getNumStates();
+
+      // run i starts in state i; the runs still distinct are listed in
+      // active, and a run merged into another records it in into
+      int[] state = new int[n], active = new int[n], into = new int[n];
+      for (int s=0; s<n; s++) {
+         state[s] = active[s] = s;
+         into[s] = -1;
+      }
+      int count = n;
+
+      // owner[t] is the run in state t after the letter read at step
+      // stamp[t] - 1
+      int[] owner = new int[n], stamp = new int[n];
+      int i = from;
+      for (; i<to && count>1; i++) {
+         int c = alphabet.classOf(text.charAt(i));
+         int k = 0;
+         for (int j=0; j<count; j++) {
+            int r = active[j];
+            int t = dfa.nextClass(state[r], c);
+            if (stamp[t] == i + 1) {
+               into[r] = owner[t];
+               continue;
+            }
+            stamp[t] = i + 1;
+            owner[t] = r;
+            state[r] = t;
+            active[k++] = r;
+         }
+         count = k;
+      }
+      if (count == 1) {
+         int r = active[0];
+         state[r] = runFrom(text, i, to, state[r]);
+      }
+
+      int[] map = new int[n];
+      for (int s=0; s<n; s++) {
+         int r = s;
+         while (into[r] >= 0) r = into[r];
+         map[s] = state[r];
+      }
+      return map;
+   }
+
+
+   // HELPER CLASSES
+
+   /** a task computing the state reached from each state by reading
+       a range of the text */
+   private class Task extends RecursiveTask {
+
+      /** the text */
+      private CharSequence text;
+
+      /** range of the text to read */
+      private int from, to;
+
+      /** the state in which the whole text is entered */
+      private int start;
+
+      /** constructs a task reading the given range of the text */
+      Task(CharSequence text, int from, int to, int start) {
+         this.text = text;
+         this.from = from;
+         this.to = to;
+         this.start = start;
+      }
+
+      /** returns the mapping from entry to exit state of the range,
+          splitting the range if it is too large; the range at the
+          beginning of the text is only entered in the start state, so
+          only that state's entry of its mapping is meaningful */
+      protected Object compute() {
+         if (to - from > GRAIN) {
+            int mid = from + (to - from) / 2;
+            Task left = new Task(text, from, mid, start);
+            Task right = new Task(text, mid, to, start);
+            right.fork();
+            int[] a = (int[]) left.compute();
+            int[] b = (int[]) right.join();
+            for (int s=0; s<a.length; s++) a[s] = b[a[s]];
+            return a;
+         }
+         if (from > 0) return runAll(text, from, to);
+         int[] map = new int[dfa.getNumStates()];
+         map[start] = runFrom(text, from, to, start);
+         return map;
+      }
+
+   }
+
+   /** the bytes of a buffer, read as the characters 0-255 */
+   private static class ByteText implements CharSequence {
+
+      /** the buffer */
+      private ByteBuffer buf;
+
+      /** number of bytes */
+      private int len;
+
+      /** constructs a view of the first len bytes of the given buffer */
+      ByteText(ByteBuffer buf, int len) {
+         this.buf = buf;
+         this.len = len;
+      }
+
+      /** returns the number of bytes */
+      public int length() { return len; }
+
+      /** returns the byte at the given index as a character */
+      public char charAt(int i) { return (char) (buf.get(i) & 0xff); }
+
+      /** returns a view of the given range of bytes */
+      public CharSequence subSequence(int start, int end) {
+         ByteBuffer b = buf.duplicate();
+         b.position(start);
+         b.limit(end);
+         return new ByteText(b.slice(), end - start);
+      }
+
+   }
+
+}
+
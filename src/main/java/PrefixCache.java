@@ -0,0 +1,399 @@
+// PrefixCache.java
+
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/** A bounded cache of the sets of current states that a finite automaton
+    reaches after reading each prefix of the words it has been asked about,
+    stored in a trie so that a new word resumes from its longest cached
+    prefix instead of being read again from the start.
+
+    Any number of threads can use the cache at once. Lookups take no locks:
+    each prefix keeps its one-letter extensions in a small hash table, and
+    adding or evicting an extension only locks the prefix it extends; a
+    lookup racing with it may miss the extension, and then only reads its
+    letter again. Eviction approximates least recently used order with the
+    CLOCK algorithm: every lookup marks the cached prefixes it reused, and
+    when the cache holds more prefixes than its capacity, one thread goes
+    around the cached prefixes in the order they were added, unmarking the
+    marked ones and evicting the others, as long as they have no cached
+    extensions. The cache empties itself whenever the automaton is
+    modified. */
+public class PrefixCache {
+
+   // STATE VARIABLES
+
+   /** the automaton */
+   private FiniteAutomaton fa;
+
+   /** maximum number of cached prefixes, besides the empty one */
+   private int capacity;
+
+   /** the cached prefixes of the current snapshot of the automaton */
+   private volatile Trie trie;
+
+   /** lock held by the thread evicting prefixes */
+   private ReentrantLock evicting = new ReentrantLock();
+
+   /** number of words that resumed from a non-empty prefix */
+   private LongAdder hits = new LongAdder();
+
+   /** number of words read from the start */
+   private LongAdder misses = new LongAdder();
+
+   /** number of letters that did not have to be read again */
+   private LongAdder saved = new LongAdder();
+
+
+   // CONSTRUCTOR
+
+   /** constructs a cache of at most the given number of prefixes
+       for the given finite automaton */
+   public PrefixCache(FiniteAutomaton fa, int capacity) {
+      this.fa = fa;
+      this.capacity = capacity;
+   }
+
+
+   // SIMULATION
+
+   /** returns whether the automaton accepts the given word */
+   public boolean accepts(CharSequence word) {
+      return accepts(fa.getNFA(), word);
+   }
+
+   /** returns whether the given up-to-date snapshot of the automaton
+       accepts the given word */
+   boolean accepts(BitSetNFA nfa, CharSequence word) {
+      Trie t = trie;
+      if (t == null || t.nfa != nfa) {
+         t = new Trie(nfa);
+         trie = t;
+      }
+
+      // find the longest cached prefix
+      Node node = t.root;
+      int len = word.length();
+      int i = 0;
+      for (; i<len; i++) {
+         Node child = node.find(word.charAt(i));
+         if (child == null) break;
+         node = child;
+      }
+      if (i > 0) {
+         hits.increment();
+         saved.add(i);
+      }
+      else misses.increment();
+
+      // mark the prefixes used
+      for (Node n=node; n!=t.root; n=n.parent) {
+         if (!n.used) n.used = true;
+      }
+
+      // read and cache the rest of the word
+      long[] set = node.set;
+      boolean dead = nfa.isDead(set);
+      boolean universal = nfa.isUniversal(set);
+      for (; i<len && !dead && !universal; i++) {
+         char l = word.charAt(i);
+         long[] next = nfa.newSet();
+         dead = !nfa.step(set, l, next);
+         universal = nfa.isUniversal(next);
+         set = next;
+         if (node != null) node = node.extend(l, next, t);
+      }
+      boolean accepted;
+      if (dead) accepted = false;
+      else if (i < len) accepted = nfa.getAlphabet().covers(word, i);
+      else accepted = nfa.isAccepting(set);
+
+      // evict prefixes if there are too many
+      if (t.size.get() > capacity && evicting.tryLock()) {
+         try { evict(t); }
+         finally { evicting.unlock(); }
+      }
+      return accepted;
+   }
+
+   /** empties the cache */
+   public void clear() { trie = new Trie(fa.getNFA()); }
+
+
+   // ACCESSORS
+
+   /** returns the maximum number of cached prefixes */
+   public int getCapacity() { return capacity; }
+
+   /** returns the number of cached prefixes */
+   public int getSize() {
+      Trie t = trie;
+      return t == null ? 0 : t.size.get();
+   }
+
+   /** returns the number of words that resumed from a non-empty prefix */
+   public long getHits() { return hits.sum(); }
+
+   /** returns the number of words read from the start */
+   public long getMisses() { return misses.sum(); }
+
+   /** returns the number of letters that did not have to be read again */
+   public long getSavedLetters() { return saved.sum(); }
+
+
+   // HELPER METHODS
+
+   /** evicts prefixes without cached extensions from the given trie,
+       going around them in the order they were added, until it is back
+       within the capacity; a marked prefix is unmarked and spared until
+       the next time around, and a prefix with cached extensions leaves
+       the queue until the last of them is evicted */
+   private void evict(Trie t) {
+      // every prefix is passed at most twice, once to unmark it
+      // and once to evict it or drop it from the queue
+      t.order.take();
+      int tries = 2 * t.size.get();
+      while (t.size.get() > capacity && tries-- > 0) {
+         Node node = t.order.poll();
+         if (node == null) break;
+         if (node.used) {
+            node.used = false;
+            t.order.offer(node);
+            continue;
+         }
+         node.queued = false;
+
+         // evict the prefix, then the prefixes it leaves without
+         // extensions, as long as they are unmarked and there is no room
+         while (node.parent.remove(node)) {
+            t.size.decrementAndGet();
+            node = node.parent;
+            if (node == t.root || node.queued || node.kids != null) break;
+            if (node.used || t.size.get() <= capacity) {
+               node.queued = true;
+               t.order.offer(node);
+               break;
+            }
+         }
+      }
+   }
+
+
+   // HELPER CLASSES
+
+   /** the cached prefixes of one snapshot of the automaton */
+   private static class Trie {
+
+      /** the snapshot of the automaton whose sets are cached */
+      BitSetNFA nfa;
+
+      /** the empty prefix */
+      Node root;
+
+      /** number of cached prefixes, besides the empty one */
+      AtomicInteger size = new AtomicInteger();
+
+      /** cached prefixes without cached extensions, and some with them,
+          in the order they were added or last spared from eviction */
+      Ring order = new Ring();
+
+      /** constructs an empty cache of prefixes for the given snapshot */
+      Trie(BitSetNFA nfa) {
+         this.nfa = nfa;
+         long[] set = nfa.newSet();
+         nfa.start(set);
+         root = new Node(null, (char) 0, set);
+      }
+
+   }
+
+   /** a cached prefix */
+   private static class Node {
+
+      /** the prefix without its last letter, or null */
+      final Node parent;
+
+      /** the last letter of the prefix */
+      final char letter;
+
+      /** the set of current states after reading the prefix */
+      final long[] set;
+
+      /** hash table of the one-letter extensions of the prefix, with
+          linear probing, or null if there are none; it is changed in
+          place, so a lookup racing with a change may miss an extension
+          and only read its letter again, and replaced when it grows */
+      volatile Node[] kids;
+
+      /** number of extensions in the hash table */
+      int numKids;
+
+      /** whether the prefix has been reused since it was added
+          or the evicting thread last passed it */
+      volatile boolean used;
+
+      /** whether the prefix has been evicted */
+      boolean removed;
+
+      /** whether the prefix is in the eviction queue */
+      boolean queued;
+
+      /** constructs the extension of the given prefix by the given letter,
+          with the given set of current states */
+      Node(Node parent, char letter, long[] set) {
+         this.parent = parent;
+         this.letter = letter;
+         this.set = set;
+      }
+
+      /** returns the one-letter extension of this prefix by
+          the given letter, or null if it is not cached; since the table
+          may be changed in place while it is read, the probe gives up
+          after one pass over the table, and may then miss an extension
+          that is cached, which only costs computing it again */
+      Node find(char l) {
+         Node[] k = kids;
+         if (k == null) return null;
+         int mask = k.length - 1;
+         int i = l & mask;
+         for (int n=0; n<k.length; n++, i=(i+1)&mask) {
+            Node c = k[i];
+            if (c == null || c.letter == l) return c;
+         }
+         return null;
+      }
+
+      /** returns the extension of this prefix by the given letter, caching
+          it in the given trie with the given set of current states unless
+          another thread has just done so, or null if this prefix has been
+          evicted */
+      synchronized Node extend(char l, long[] set, Trie t) {
+         if (removed) return null;
+         Node c = find(l);
+         if (c != null) return c;
+         c = new Node(this, l, set);
+         Node[] k = kids;
+         if (k == null || 2 * (numKids + 1) > k.length) {
+            // build a table twice as large
+            Node[] g = new Node[k == null ? 2 : 2 * k.length];
+            if (k != null) {
+               for (int i=0; i<k.length; i++) if (k[i] != null) put(g, k[i]);
+            }
+            put(g, c);
+            kids = g;
+         }
+         else put(k, c);
+         numKids++;
+         c.queued = true;
+         t.order.add(c);
+         t.size.incrementAndGet();
+         return c;
+      }
+
+      /** evicts the given extension of this prefix if it has no cached
+          extensions of its own, returning whether it did */
+      synchronized boolean remove(Node c) {
+         synchronized (c) {
+            if (c.removed || c.kids != null) return false;
+            c.removed = true;
+         }
+         if (--numKids == 0) {
+            kids = null;
+            return true;
+         }
+
+         // empty its slot, moving back the extensions probed past it
+         Node[] k = kids;
+         int mask = k.length - 1;
+         int i = c.letter & mask;
+         while (k[i] != c) i = (i + 1) & mask;
+         k[i] = null;
+         for (int j=(i+1)&mask; k[j]!=null; j=(j+1)&mask) {
+            int h = k[j].letter & mask;
+            if (((j - h) & mask) >= ((j - i) & mask)) {
+               k[i] = k[j];
+               k[j] = null;
+               i = j;
+            }
+         }
+         return true;
+      }
+
+      /** puts the given extension into the given hash table */
+      private static void put(Node[] t, Node c) {
+         int mask = t.length - 1;
+         int i = c.letter & mask;
+         while (t[i] != null) i = (i + 1) & mask;
+         t[i] = c;
+      }
+
+   }
+
+
+   /** a queue of prefixes in a circular array, used by the evicting
+       thread, and the prefixes added by other threads in the meantime */
+   private static class Ring {
+
+      /** the queued prefixes, from index head on */
+      private Node[] nodes = new Node[16];
+
+      /** index of the first queued prefix */
+      private int head;
+
+      /** number of queued prefixes */
+      private int count;
+
+      /** the prefixes added since the evicting thread last took them */
+      private Node[] added = new Node[16];
+
+      /** number of prefixes added */
+      private int numAdded;
+
+      /** adds the given prefix, for the evicting thread to take */
+      synchronized void add(Node node) {
+         if (numAdded == added.length) {
+            Node[] a = new Node[2 * numAdded];
+            System.arraycopy(added, 0, a, 0, numAdded);
+            added = a;
+         }
+         added[numAdded++] = node;
+      }
+
+      /** moves the prefixes added since the last call to the end of the
+          queue; only the evicting thread may call this */
+      synchronized void take() {
+         for (int i=0; i<numAdded; i++) {
+            offer(added[i]);
+            added[i] = null;
+         }
+         numAdded = 0;
+      }
+
+      /** adds the given prefix at the end of the queue; only the evicting
+          thread may call this */
+      void offer(Node node) {
+         if (count == nodes.length) {
+            Node[] n = new Node[2 * count];
+            for (int i=0; i<count; i++) {
+               n[i] = nodes[(head + i) & (count - 1)];
+            }
+            nodes = n;
+            head = 0;
+         }
+         nodes[(head + count++) & (nodes.length - 1)] = node;
+      }
+
+      /** removes and returns the first prefix of the queue, or null if
+          it is empty; only the evicting thread may call this */
+      Node poll() {
+         if (count == 0) return null;
+         Node node = nodes[head];
+         nodes[head] = null;
+         head = (head + 1) & (nodes.length - 1);
+         count--;
+         return node;
+      }
+
+   }
+
+}
@@ -0,0 +1,136 @@
+// ProductDFA.java
+
+/** A lazily built deterministic automaton for a boolean combination of one
+    or two finite automata. Each of its states is a pair of sets of states,
+    one of each operand, stored side by side in a single bitset; only the
+    pairs reachable on the words actually read are ever computed, and they
+    are cached with the same memory cap and eviction policies as any other
+    LazyDFA. Since the operands are determinized on the fly, complements
+    and differences cost no more than intersections and unions. */
+public class ProductDFA extends LazyDFA {
+
+   // CONSTANTS
+
+   /** accepts the words accepted by both operands */
+   public static final int INTERSECTION = 0;
+
+   /** accepts the words accepted by either operand */
+   public static final int UNION = 1;
+
+   /** accepts the words accepted by the first operand but not the second */
+   public static final int DIFFERENCE = 2;
+
+   /** accepts the words accepted by exactly one of the operands */
+   public static final int SYMMETRIC_DIFFERENCE = 3;
+
+   /** accepts the words rejected by the (only) operand */
+   public static final int COMPLEMENT = 4;
+
+
+   // STATE VARIABLES
+
+   /** the operands; the second is null for a complement */
+   private BitSetNFA first, second;
+
+   /** boolean operation combining the operands */
+   private int op;
+
+   /** number of longs in a set of states of the first operand */
+   private int split;
+
+   /** letter class of each operand for each letter class of the product */
+   private int[] firstClass, secondClass;
+
+   /** scratch sets of states of each operand */
+   private long[] a, b, nextA, nextB;
+
+
+   // CONSTRUCTORS
+
+   /** constructs the complement of the given automaton, whose cache uses
+       at most (roughly) the given number of bytes and evicts states
+       according to the given policy (LazyDFA.FLUSH or LazyDFA.LRU) */
+   public ProductDFA(BitSetNFA nfa, long maxBytes, int policy) {
+      this(nfa, null, COMPLEMENT, maxBytes, policy);
+   }
+
+   /** constructs the given boolean combination (INTERSECTION, UNION,
+       DIFFERENCE or SYMMETRIC_DIFFERENCE) of the given automata, whose
+       cache uses at most (roughly) the given number of bytes and evicts
+       states according to the given policy; a null second automaton
+       gives the complement of the first */
+   public ProductDFA(BitSetNFA first, BitSetNFA second, int op,
+      long maxBytes, int policy)
+   {
+      super(second == null ? first.getAlphabet() :
+         Alphabet.join(first.getAlphabet(), second.getAlphabet()),
+         first.getWords() + (second == null ? 0 : second.getWords()),
+         maxBytes, policy);
+      this.first = first;
+      this.second = second;
+      this.op = second == null ? COMPLEMENT : op;
+      split = first.getWords();
+      a = first.newSet();
+      nextA = first.newSet();
+
+      firstClass = getAlphabet().project(first.getAlphabet());
+      if (second != null) {
+         secondClass = getAlphabet().project(second.getAlphabet());
+         b = second.newSet();
+         nextB = second.newSet();
+      }
+   }
+
+
+   // ACCESSORS
+
+   /** returns the first (or only) operand */
+   public BitSetNFA getFirst() { return first; }
+
+   /** returns the second operand, or null for a complement */
+   public BitSetNFA getSecond() { return second; }
+
+   /** returns the boolean operation combining the operands */
+   public int getOperation() { return op; }
+
+
+   // OVERRIDDEN METHODS
+
+   /** stores the pair of start sets into the given set */
+   protected void startSet(long[] set) {
+      first.start(a);
+      System.arraycopy(a, 0, set, 0, split);
+      if (second != null) {
+         second.start(b);
+         System.arraycopy(b, 0, set, split, b.length);
+      }
+   }
+
+   /** steps each operand's half of the given set on a letter
+       of the given class */
+   protected void stepSet(long[] set, int c, long[] next) {
+      System.arraycopy(set, 0, a, 0, split);
+      first.stepClass(a, firstClass[c], nextA);
+      System.arraycopy(nextA, 0, next, 0, split);
+      if (second != null) {
+         System.arraycopy(set, split, b, 0, b.length);
+         second.stepClass(b, secondClass[c], nextB);
+         System.arraycopy(nextB, 0, next, split, b.length);
+      }
+   }
+
+   /** combines the acceptance of each operand's half of the given set */
+   protected boolean isAcceptingSet(long[] set) {
+      System.arraycopy(set, 0, a, 0, split);
+      boolean x = first.isAccepting(a);
+      if (op == COMPLEMENT) return !x;
+      System.arraycopy(set, split, b, 0, b.length);
+      boolean y = second.isAccepting(b);
+      if (op == INTERSECTION) return x && y;
+      else if (op == UNION) return x || y;
+      else if (op == DIFFERENCE) return x && !y;
+      else return x != y;
+   }
+
+}
+
@@ -3,13 +3,53 @@
 import java.io.*;
 import java.util.*;
 
-/** A non-deterministic pushdown automaton. */
+/** A non-deterministic pushdown automaton. Each transition reads a letter
+    (or nothing), pops a symbol off the stack (or nothing) and pushes a
+    symbol (or nothing); a word is accepted if some computation reading
+    all of it ends in an accept state. */
 public class PushdownAutomaton extends FiniteStateMachine {
 
+   // CONSTANTS
+
+   /** default maximum number of symbols on a stack */
+   public static final int MAX_DEPTH = 1 << 16;
+
+   /** default maximum number of configurations after each letter */
+   public static final int MAX_CONFIGURATIONS = 1 << 20;
+
+   /** default number of configurations above which computations
+       switch to parsing */
+   public static final int BRANCHING = 256;
+
+
    // STATE VARIABLES
 
-   /** boolean array marking whether each state is a current state */
-   private boolean[] b;
+   /** snapshot of this pushdown automaton used to run computations */
+   private SharedStackPDA pda;
+
+   /** compiled version of the snapshot if it is deterministic,
+       or null */
+   private DeterministicPDA dpda;
+
+   /** parser for a grammar generating the language of the snapshot,
+       or null if it has not been needed yet */
+   private EarleyParser parser;
+
+   /** the current computation */
+   private PDARun computation;
+
+   /** maximum number of symbols on a stack */
+   private int maxDepth = MAX_DEPTH;
+
+   /** maximum number of configurations after each letter */
+   private int maxConfigs = MAX_CONFIGURATIONS;
+
+   /** number of configurations above which computations
+       switch to parsing */
+   private int branching = BRANCHING;
+
+   /** a buffer containing keystrokes typed */
+   private String keyBuf = "";
 
 
    // CONSTRUCTORS
@@ -31,7 +71,6 @@ public class PushdownAutomaton extends FiniteStateMachine {
             states[i].setMetadata(new Hashtable());
          }
       }
-      fixB();
    }
 
 
@@ -41,25 +80,30 @@ public class PushdownAutomaton extends FiniteStateMachine {
    public void addState(State state) {
       super.addState(state);
       if (state.getMetadata() == null) state.setMetadata(new Hashtable());
-      fixB();
    }
 
    /** removes a state from this pushdown automaton */
    public void removeState(State state) {
       synchronized (states) {
          // sever all transition function connections before removing state
-         for (int i=0; i<numStates; i++) {
-            State s = (State) states.elementAt(i);
-            for (char l=0; l<256; l++) {
-               function.removeTransition(new TransitionTuple(s, l),
-                  new TransitionTuple(state));
-            }
-         }
+         function.removeTransitionsTo(state);
       }
       super.removeState(state);
-      fixB();
    }
 
+   /** sets the budgets within which computations run: the maximum number
+       of symbols on a stack, and the maximum number of configurations
+       after each letter */
+   public void setBudgets(int maxDepth, int maxConfigs) {
+      this.maxDepth = maxDepth;
+      this.maxConfigs = maxConfigs;
+   }
+
+   /** sets the number of configurations above which headless
+       computations stop simulating this pushdown automaton and decide
+       the word by parsing it instead */
+   public void setBranching(int branching) { this.branching = branching; }
+
 
    // REQUIRED MODIFIERS
 
@@ -67,13 +111,8 @@ public class PushdownAutomaton extends FiniteStateMachine {
    public void startComputation(String word) {
       synchronized (states) {
          this.word = word;
-         b = new boolean[numStates];
-         for (int j=0; j<numStates; j++) {
-            State s = (State) states.elementAt(j);
-            b[j] = (s == start);
-         }
+         computation = new PDARun(getPDA(), maxDepth, maxConfigs);
          step = 0;
-         makeEpsilonTransitions(b);
          answer = null;
          synchAndCheck();
       }
@@ -97,39 +136,10 @@ public class PushdownAutomaton extends FiniteStateMachine {
             return;
          }
 
-         char l = word.charAt(step);
-         boolean[] nextB = new boolean[numStates];
-         for (int j=0; j<numStates; j++) nextB[j] = false;
-
-         // loop through each current state
-         for (int j=0; j<numStates; j++) {
-            if (b[j]) {
-               State s = (State) states.elementAt(j);
-               Vector next = function.getTransitions(
-                  new TransitionTuple(s, l));
-               if (next != null) {
-                  // mark all resultant states as next states
-                  for (int k=0; k<next.size(); k++) {
-                     TransitionTuple t = (TransitionTuple) next.elementAt(k);
-                     State ns = t.getState();
-                     nextB[states.indexOf(ns)] = true;
-                  }
-               }
-            }
-         }
-
-         // make epsilon transitions from the new states
-         makeEpsilonTransitions(nextB);
-
-         // next states become current states
-         b = nextB;
-
-         // check whether all non-deterministic paths have rejected
-         boolean dead = true;
-         for (int i=0; i<numStates; i++) {
-            if (b[i]) dead = false;
-         }
-         if (dead) {
+         // make every move on the next letter from every configuration,
+         // followed by any epsilon moves, and reject once every
+         // non-deterministic path has rejected
+         if (!computation.step(word.charAt(step))) {
             answer = new Boolean(false);
             synchAndCheck();
             return;
@@ -148,129 +158,180 @@ public class PushdownAutomaton extends FiniteStateMachine {
        transitions according to its own model */
    protected void transitionKeyPressed(State source, State dest, char key) {
       Hashtable meta = (Hashtable) source.getMetadata();
-      String list = (String) meta.get(dest);
-      if (list == null) list = "";
+      String[] list = (String[]) meta.get(dest);
+      if (list == null) list = new String[0];
+      int listLen = list.length;
       if (key == 8) {
-         // backspace a transition off the list
-         int listLen = list.length();
-         if (listLen > 0) {
-            char l = list.charAt(listLen - 1);
-            if (l == EPSILON_CHAR) {
-               // transition is actually an epsilon transition
-               l = EPSILON;
+         if (keyBuf.length() > 0) {
+            // clear the key buffer
+            keyBuf = "";
+         }
+         else {
+            // backspace a transition off the list
+            if (listLen > 0) {
+               String last = list[listLen - 1];
+               String[] newList = new String[listLen - 1];
+               System.arraycopy(list, 0, newList, 0, listLen - 1);
+               function.removeTransition(
+                  new TransitionTuple(source, toSymbol(last.charAt(0)),
+                     toSymbol(last.charAt(2))),
+                  new TransitionTuple(dest, EPSILON,
+                     toSymbol(last.charAt(5))));
+               meta.put(dest, newList);
             }
-            function.removeTransition(new TransitionTuple(source, l),
-               new TransitionTuple(dest));
-            list = list.substring(0, listLen - 1);
-            meta.put(dest, list);
          }
       }
       else {
-         // add the typed character to the transition list
-         if (key >= 32 && key < 256 && key != 127) {
-            if (key == 32) {
-               if (list.indexOf(EPSILON_CHAR) >= 0) return;
-               function.addTransition(new TransitionTuple(source, EPSILON),
-                  new TransitionTuple(dest));
-               list = list + EPSILON_CHAR;
+         // ignore out-of-range characters
+         if (key < 32 || key > 126) return;
+
+         // keys are the letter read, the symbol popped and the symbol
+         // pushed, with a space standing for nothing
+         if (key == 32) key = EPSILON_CHAR;
+         keyBuf = keyBuf + key;
+
+         if (keyBuf.length() == 3) {
+            // three keys have been pressed
+            String s = keyBuf.charAt(0) + "," + keyBuf.charAt(1) + "->" +
+               keyBuf.charAt(2);
+            keyBuf = "";
+
+            // make sure this transition isn't already present
+            for (int i=0; i<listLen; i++) {
+               if (list[i].equals(s)) return;
             }
-            else {
-               if (list.indexOf(key) >= 0) return;
-               function.addTransition(new TransitionTuple(source, key),
-                  new TransitionTuple(dest));
-               list = list + key;
-            }
-            meta.put(dest, list);
+
+            // add the transition
+            String[] newList = new String[listLen + 1];
+            System.arraycopy(list, 0, newList, 0, listLen);
+            newList[listLen] = s;
+            function.addTransition(
+               new TransitionTuple(source, toSymbol(s.charAt(0)),
+                  toSymbol(s.charAt(2))),
+               new TransitionTuple(dest, EPSILON, toSymbol(s.charAt(5))));
+            meta.put(dest, newList);
          }
       }
    }
 
 
+   // ACCESSORS
+
+   /** returns the configurations of the current computation */
+   public Vector getConfigurations() { return computation.getConfigurations(); }
+
+   /** tests whether this pushdown automaton is deterministic: no two
+       moves from any state can both apply to the same configuration */
+   public boolean isDeterministic() {
+      synchronized (states) {
+         getPDA();
+         return dpda != null;
+      }
+   }
+
+   /** runs a whole computation on the given word, without touching the
+       display, and returns PDARun.ACCEPTED or PDARun.REJECTED. A
+       deterministic pushdown automaton is run on a single stack.
+       Otherwise the configurations are simulated within the budgets as
+       long as there are at most as many of them as the branching limit;
+       past it, or if the budgets run out, the word is decided instead by
+       converting this pushdown automaton to a context-free grammar and
+       parsing the word, which takes time cubic in its length however much
+       the computation branches */
+   public int run(CharSequence word) {
+      SharedStackPDA p = getPDA();
+      DeterministicPDA d = dpda;
+      if (d != null && d.getPDA() == p) {
+         // a deterministic automaton has only one branch to follow
+         int result = d.run(word, maxDepth);
+         if (result != PDARun.UNDECIDED) return result;
+      }
+      PDARun r = new PDARun(p, maxDepth, maxConfigs);
+      int len = word.length();
+      boolean parse = r.getConfigurations().size() > branching;
+      for (int i=0; i<len && !parse; i++) {
+         if (!r.step(word.charAt(i))) break;
+         parse = r.getConfigurations().size() > branching;
+      }
+      if (!parse && r.getResult() != PDARun.UNDECIDED) return r.getResult();
+      return getParser(p).accepts(word) ? PDARun.ACCEPTED : PDARun.REJECTED;
+   }
+
+
    // REQUIRED ACCESSORS
 
+   /** runs a whole computation on the given word and returns whether this
+       pushdown automaton accepts it, without touching the display */
+   public boolean accepts(CharSequence word) {
+      return run(word) == PDARun.ACCEPTED;
+   }
+
    /** returns a set of strings representing the transitions from the given
        source state to the given destination state */
    protected String[] getTransitionStrings(State source, State dest) {
       Hashtable meta = (Hashtable) source.getMetadata();
-      String s = (String) meta.get(dest);
-      if (s == null || s.equals("")) return null;
-      else return new String[] {s};
+      String[] s = (String[]) meta.get(dest);
+      if (s == null || s.length == 0) return null;
+      else return s;
    }
 
 
    // HELPER METHODS
 
-   /** adjusts the size of the current state array if
-       the number of states has changed */
-   private void fixB() {
+   /** returns a snapshot of this pushdown automaton as currently defined */
+   private SharedStackPDA getPDA() {
       synchronized (states) {
-         boolean[] newB = new boolean[numStates];
-         for (int i=0; i<numStates; i++) {
-            State s = (State) states.elementAt(i);
-            newB[i] = s.isCurrent();
+         if (pda == null || !pda.isUpToDate(states, start, function)) {
+            pda = new SharedStackPDA(states, start, function);
+            dpda = DeterministicPDA.create(pda);
          }
-         b = newB;
+         return pda;
       }
    }
 
+   /** returns a parser for the language of the given snapshot */
+   private EarleyParser getParser(SharedStackPDA p) {
+      synchronized (states) {
+         if (parser == null || parser.getGrammar().getPDA() != p) {
+            parser = new EarleyParser(new ContextFreeGrammar(p));
+         }
+         return parser;
+      }
+   }
+
+   /** converts a displayed character to a transition letter or symbol */
+   private static char toSymbol(char c) {
+      return c == EPSILON_CHAR ? EPSILON : c;
+   }
+
    /** makes sure each state knows whether or not it's a current state,
        then checks whether the computation is finished */
    private void synchAndCheck() {
       for (int i=0; i<numStates; i++) {
          State s = (State) states.elementAt(i);
-         s.setCurrent(b[i]);
+         s.setCurrent(false);
+      }
+      Vector configs = computation.getConfigurations();
+      SharedStackPDA running = computation.getPDA();
+      for (int i=0; i<configs.size(); i++) {
+         Configuration c = (Configuration) configs.elementAt(i);
+         running.getState(c.getState()).setCurrent(true);
       }
 
-      // check if computation is at the end of the word
-      if (step == word.length()) {
-         // if any current states are accept states, accept
-         for (int i=0; i<numStates; i++) {
-            if (b[i]) {
-               State s = (State) states.elementAt(i);
-               if (s.isAccept()) {
-                  answer = new Boolean(true);
-                  repaint();
-                  return;
-               }
-            }
+      // at the end of the word, accept if any configuration
+      // is in an accept state
+      int result = computation.getResult();
+      if (step == word.length() || answer != null) {
+         answer = new Boolean(result == PDARun.ACCEPTED);
+         if (result == PDARun.UNDECIDED && State.DEBUG) {
+            System.err.println("PushdownAutomaton: computation exceeded " +
+               "its budgets and may have missed an accepting branch");
          }
-
-         // otherwise, reject
-         answer = new Boolean(false);
       }
 
       // redraw state diagram
       repaint();
    }
 
-   /** modifies the current states to include any states accessible through
-       epsilon transitions */
-   private void makeEpsilonTransitions(boolean[] b) {
-      boolean changed = true;
-      // loop through current states until new states stop getting added
-      while (changed) {
-         changed = false;
-         for (int i=0; i<numStates; i++) {
-            if (b[i]) {
-               State s = (State) states.elementAt(i);
-               Vector eps = function.getTransitions(
-                  new TransitionTuple(s, EPSILON));
-               if (eps != null) {
-                  // mark all resultant states as current states
-                  for (int j=0; j<eps.size(); j++) {
-                     TransitionTuple t = (TransitionTuple) eps.elementAt(j);
-                     State ns = t.getState();
-                     int q = states.indexOf(ns);
-                     if (!b[q]) {
-                        changed = true;
-                        b[q] = true;
-                     }
-                  }
-               }
-            }
-         }
-      }
-   }
-
 }
 
@@ -0,0 +1,288 @@
+// Reducer.java
+
+import java.awt.Point;
+import java.util.*;
+
+/** Builds a smaller finite automaton accepting the same language as a given
+    one, leaving the original untouched. States that are unreachable from
+    the start state or that cannot reach any accept state are dropped
+    first; then states are merged if they are equivalent under forward
+    bisimulation (same acceptance, and successors in the same blocks on
+    each letter) and then under backward bisimulation (same start status,
+    and predecessors in the same blocks on each letter). Epsilon
+    transitions are treated as transitions on an ordinary letter, so the
+    reduced automaton has the same kinds of transitions as the original. */
+public class Reducer {
+
+   // STATE VARIABLES
+
+   /** number of states of the automaton being reduced */
+   private int n;
+
+   /** start state */
+   private int start;
+
+   /** whether each state is an accept state */
+   private boolean[] accept;
+
+   /** original state standing for each state */
+   private State[] origin;
+
+   /** source, letter and destination of each transition */
+   private int[] from, to;
+   private char[] letter;
+
+   /** number of transitions */
+   private int m;
+
+   /** number of states of the original automaton */
+   private int originalStates;
+
+   /** number of states left after trimming */
+   private int trimmedStates;
+
+   /** the reduced automaton */
+   private FiniteAutomaton result;
+
+
+   // CONSTRUCTOR
+
+   /** reduces the given finite automaton as currently defined */
+   public Reducer(FiniteAutomaton fa) {
+      read(fa);
+      originalStates = n;
+      trim();
+      trimmedStates = n;
+      int[] block = new int[n];
+      for (int i=0; i<n; i++) block[i] = accept[i] ? 1 : 0;
+      quotient(refine(block, from, to));
+      for (int i=0; i<n; i++) block[i] = i == start ? 1 : 0;
+      quotient(refine(block, to, from));
+      build();
+   }
+
+
+   // ACCESSORS
+
+   /** returns the reduced automaton */
+   public FiniteAutomaton getResult() { return result; }
+
+   /** returns the number of states of the original automaton */
+   public int getOriginalStates() { return originalStates; }
+
+   /** returns the number of states left after dropping useless ones */
+   public int getTrimmedStates() { return trimmedStates; }
+
+   /** returns the number of states of the reduced automaton */
+   public int getReducedStates() { return n; }
+
+
+   // HELPER METHODS
+
+   /** reads the states and transitions of the given automaton */
+   private void read(FiniteAutomaton fa) {
+      Vector states = fa.getStates();
+      TransitionFunction function = fa.getTransitionFunction();
+      Hashtable index = new Hashtable();
+      synchronized (states) {
+         n = states.size();
+         accept = new boolean[n];
+         origin = new State[n];
+         for (int i=0; i<n; i++) {
+            State s = (State) states.elementAt(i);
+            origin[i] = s;
+            accept[i] = s.isAccept();
+            index.put(s, new Integer(i));
+         }
+         start = ((Integer) index.get(fa.getStartState())).intValue();
+
+         from = new int[16];
+         to = new int[16];
+         letter = new char[16];
+         m = 0;
+         Enumeration e = function.getDomain();
+         while (e.hasMoreElements()) {
+            TransitionTuple fromTuple = (TransitionTuple) e.nextElement();
+            Integer p = (Integer) index.get(fromTuple.getState());
+            Vector v = function.getTransitions(fromTuple);
+            if (p == null || v == null) continue;
+            for (int k=0; k<v.size(); k++) {
+               TransitionTuple toTuple = (TransitionTuple) v.elementAt(k);
+               Integer q = (Integer) index.get(toTuple.getState());
+               if (q != null) {
+                  addTransition(p.intValue(), fromTuple.getLetter(),
+                     q.intValue());
+               }
+            }
+         }
+      }
+   }
+
+   /** drops the states that are unreachable from the start state
+       or cannot reach an accept state */
+   private void trim() {
+      boolean[] forward = new boolean[n];
+      forward[start] = true;
+      search(forward, from, to);
+      boolean[] backward = new boolean[n];
+      for (int i=0; i<n; i++) backward[i] = accept[i];
+      search(backward, to, from);
+
+      int[] block = new int[n];
+      int k = 0;
+      for (int i=0; i<n; i++) {
+         block[i] = (forward[i] && backward[i]) || i == start ? k++ : -1;
+      }
+      quotient(block);
+   }
+
+   /** marks every state reachable from the marked states along
+       the transitions from src to dst */
+   private void search(boolean[] mark, int[] src, int[] dst) {
+      int[] first = new int[n + 1], edges = new int[m];
+      adjacency(src, first, edges);
+      int[] stack = new int[n];
+      int top = 0;
+      for (int i=0; i<n; i++) if (mark[i]) stack[top++] = i;
+      while (top > 0) {
+         int s = stack[--top];
+         for (int j=first[s]; j<first[s+1]; j++) {
+            int t = dst[edges[j]];
+            if (!mark[t]) {
+               mark[t] = true;
+               stack[top++] = t;
+            }
+         }
+      }
+   }
+
+   /** refines the given partition until every two states in one block
+       have transitions on the same letters along src to dst into the same
+       blocks, returning the block of each state */
+   private int[] refine(int[] block, int[] src, int[] dst) {
+      int[] first = new int[n + 1], edges = new int[m];
+      adjacency(src, first, edges);
+      int blocks = -1;
+      while (true) {
+         Hashtable ids = new Hashtable();
+         int[] next = new int[n];
+         for (int i=0; i<n; i++) {
+            // a state's signature is its block and its sorted,
+            // deduplicated (letter, destination block) pairs
+            long[] sig = new long[first[i+1] - first[i]];
+            for (int j=first[i]; j<first[i+1]; j++) {
+               int e = edges[j];
+               sig[j - first[i]] = ((long) letter[e] << 32) | block[dst[e]];
+            }
+            Arrays.sort(sig);
+            StringBuffer key = new StringBuffer();
+            key.append(block[i]);
+            for (int j=0; j<sig.length; j++) {
+               if (j > 0 && sig[j] == sig[j-1]) continue;
+               key.append(',').append(sig[j]);
+            }
+            String k = key.toString();
+            Integer id = (Integer) ids.get(k);
+            if (id == null) {
+               id = new Integer(ids.size());
+               ids.put(k, id);
+            }
+            next[i] = id.intValue();
+         }
+         block = next;
+         if (ids.size() == blocks) return block;
+         blocks = ids.size();
+      }
+   }
+
+   /** replaces the automaton by its quotient under the given partition,
+       dropping the states in block -1 */
+   private void quotient(int[] block) {
+      int k = 0;
+      for (int i=0; i<n; i++) if (block[i] >= k) k = block[i] + 1;
+      boolean[] acc = new boolean[k];
+      State[] orig = new State[k];
+      for (int i=n-1; i>=0; i--) {
+         int b = block[i];
+         if (b < 0) continue;
+         acc[b] |= accept[i];
+         orig[b] = origin[i];
+      }
+      int[] f = from, t = to;
+      char[] l = letter;
+      int count = m;
+      n = k;
+      start = block[start];
+      accept = acc;
+      origin = orig;
+      from = new int[16];
+      to = new int[16];
+      letter = new char[16];
+      m = 0;
+
+      Hashtable seen = new Hashtable();
+      for (int e=0; e<count; e++) {
+         int p = block[f[e]], q = block[t[e]];
+         if (p < 0 || q < 0) continue;
+         Long key = new Long(((long) p * 65536 + l[e]) * k + q);
+         if (seen.put(key, key) == null) addTransition(p, l[e], q);
+      }
+   }
+
+   /** lists the transitions of each state along src, storing the index
+       of the first transition of each state into first and the
+       transitions themselves into edges */
+   private void adjacency(int[] src, int[] first, int[] edges) {
+      for (int e=0; e<m; e++) first[src[e] + 1]++;
+      for (int i=0; i<n; i++) first[i+1] += first[i];
+      int[] pos = new int[n];
+      for (int i=0; i<n; i++) pos[i] = first[i];
+      for (int e=0; e<m; e++) edges[pos[src[e]]++] = e;
+   }
+
+   /** adds a transition to the automaton being reduced */
+   private void addTransition(int p, char l, int q) {
+      if (m == from.length) {
+         int[] f = new int[2 * m], t = new int[2 * m];
+         char[] c = new char[2 * m];
+         System.arraycopy(from, 0, f, 0, m);
+         System.arraycopy(to, 0, t, 0, m);
+         System.arraycopy(letter, 0, c, 0, m);
+         from = f;
+         to = t;
+         letter = c;
+      }
+      from[m] = p;
+      letter[m] = l;
+      to[m] = q;
+      m++;
+   }
+
+   /** builds the reduced finite automaton, naming and placing each state
+       after the first original state merged into it */
+   private void build() {
+      State[] states = new State[n];
+      for (int i=0; i<n; i++) {
+         Point pos = origin[i].getPosition();
+         states[i] = new State(origin[i].getName(), accept[i],
+            pos == null ? null : new Point(pos));
+      }
+      result = new FiniteAutomaton(states, states[start]);
+      TransitionFunction function = result.getTransitionFunction();
+      for (int e=0; e<m; e++) {
+         State source = states[from[e]], dest = states[to[e]];
+         function.addTransition(new TransitionTuple(source, letter[e]),
+            new TransitionTuple(dest));
+
+         // keep the transition list displayed by the editor up to date
+         Hashtable meta = (Hashtable) source.getMetadata();
+         String list = (String) meta.get(dest);
+         if (list == null) list = "";
+         char c = letter[e] == FiniteStateMachine.EPSILON ?
+            FiniteStateMachine.EPSILON_CHAR : letter[e];
+         meta.put(dest, list + c);
+      }
+   }
+
+}
+
@@ -0,0 +1,12 @@
+// ResultListener.java
+
+/** A callback receiving the results of a bulk word classification. */
+public interface ResultListener {
+
+   /** called once for each classified word, possibly from several threads
+       at once, with the word's index in the batch and whether the
+       automaton accepts it */
+   void result(int index, CharSequence word, boolean accepted);
+
+}
+
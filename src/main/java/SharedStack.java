@@ -0,0 +1,118 @@
+// SharedStack.java
+
+import java.util.*;
+
+/** A node of a graph-structured stack, as in GLR parsers: a top symbol
+    over a set of stacks below it, standing for every stack made of that
+    symbol on top of any of them. A computation merges its configurations
+    with the same state and the same top symbol into one node by uniting
+    the stacks below them, so however much it branches it never holds more
+    configurations than there are states times symbols, and no stack is
+    ever copied. A node may even lie below itself, standing for the
+    unbounded stacks built by a cycle of moves that push.
+
+    Nodes only point down, so a node that is no longer below any current
+    configuration can be collected. The single bottom node of a
+    computation, with no symbol and nothing below it, stands for the empty
+    stack. Nodes must not be grown by several threads at once. */
+public class SharedStack {
+
+   // CONSTANTS
+
+   /** number of stacks below a node past which they are indexed */
+   private static final int INDEXED = 8;
+
+
+   // STATE VARIABLES
+
+   /** the top symbol, if the stack is not empty */
+   private char top;
+
+   /** the stacks below the top symbol, or null if the stack is empty */
+   private SharedStack[] below;
+
+   /** number of stacks below the top symbol */
+   private int numBelow;
+
+   /** set of the stacks below the top symbol, once there are many of them
+       and until the node is sealed, or null */
+   private Hashtable index;
+
+   /** number of symbols on the stack through which this node was
+       first reached */
+   private int depth;
+
+
+   // CONSTRUCTORS
+
+   /** constructs a new empty stack */
+   public SharedStack() { }
+
+   /** constructs a node with the given top symbol over the given stack */
+   public SharedStack(char top, SharedStack rest) {
+      this.top = top;
+      below = new SharedStack[] {rest};
+      numBelow = 1;
+      depth = rest.depth + 1;
+   }
+
+
+   // MODIFIERS
+
+   /** adds the given stack to those below the top symbol of this node,
+       which must not be empty, and returns whether it was not there yet */
+   public boolean addBelow(SharedStack s) {
+      if (index != null) {
+         if (index.put(s, s) != null) return false;
+      }
+      else {
+         for (int i=0; i<numBelow; i++) {
+            if (below[i] == s) return false;
+         }
+         if (numBelow == INDEXED) {
+            index = new Hashtable();
+            for (int i=0; i<numBelow; i++) index.put(below[i], below[i]);
+            index.put(s, s);
+         }
+      }
+      if (numBelow == below.length) {
+         SharedStack[] b = new SharedStack[2 * numBelow];
+         System.arraycopy(below, 0, b, 0, numBelow);
+         below = b;
+      }
+      below[numBelow++] = s;
+      return true;
+   }
+
+   /** drops the index of the stacks below this node, once no more will
+       be added */
+   public void seal() { index = null; }
+
+
+   // ACCESSORS
+
+   /** returns the top symbol of this stack, which must not be empty */
+   public char peek() { return top; }
+
+   /** tests whether this stack is empty */
+   public boolean isEmpty() { return below == null; }
+
+   /** returns the number of symbols on the stack through which this node
+       was first reached */
+   public int getDepth() { return depth; }
+
+   /** returns the number of stacks below the top symbol */
+   public int getNumBelow() { return numBelow; }
+
+   /** returns the given stack below the top symbol */
+   public SharedStack getBelow(int i) { return below[i]; }
+
+   /** returns the symbols of the stack through which this node was first
+       reached, from the top down */
+   public String toString() {
+      StringBuffer sb = new StringBuffer(depth);
+      for (SharedStack s=this; s.below!=null; s=s.below[0]) sb.append(s.top);
+      return sb.toString();
+   }
+
+}
@@ -0,0 +1,163 @@
+// SharedStackPDA.java
+
+import java.util.*;
+
+/** An immutable snapshot of a non-deterministic pushdown automaton, with
+    the moves from each state listed in arrays. A move reads a letter (or
+    nothing, for an epsilon move), pops a symbol off the stack (or
+    nothing), pushes a symbol (or nothing) and goes to a new state.
+    Computations on a snapshot are run by PDARun, so one snapshot can run
+    any number of computations at once. */
+public class SharedStackPDA {
+
+   // STATE VARIABLES
+
+   /** the states of the automaton, in index order */
+   private State[] stateList;
+
+   /** mapping from each State to its Integer index */
+   private Hashtable index;
+
+   /** number of states */
+   private int numStates;
+
+   /** start state of the automaton */
+   private State start;
+
+   /** transition function from which this snapshot was built */
+   private TransitionFunction function;
+
+   /** version of the transition function when this snapshot was built */
+   private int version;
+
+   /** whether each state is an accept state */
+   private boolean[] accept;
+
+   /** letter read, symbol popped and symbol pushed by each move from each
+       state, with EPSILON standing for nothing */
+   private char[][] letter, pop, push;
+
+   /** destination state index of each move from each state */
+   private int[][] dest;
+
+
+   // CONSTRUCTOR
+
+   /** constructs a snapshot of the pushdown automaton with the given
+       Vector of states, start state and transition function */
+   public SharedStackPDA(Vector states, State start,
+      TransitionFunction function)
+   {
+      this.start = start;
+      this.function = function;
+      version = function.getVersion();
+      numStates = states.size();
+      stateList = new State[numStates];
+      index = new Hashtable();
+      accept = new boolean[numStates];
+      for (int i=0; i<numStates; i++) {
+         State s = (State) states.elementAt(i);
+         stateList[i] = s;
+         index.put(s, new Integer(i));
+         accept[i] = s.isAccept();
+      }
+
+      // count the moves from each state, then list them
+      int[] count = new int[numStates];
+      for (int pass=0; pass<2; pass++) {
+         if (pass == 1) {
+            letter = new char[numStates][];
+            pop = new char[numStates][];
+            push = new char[numStates][];
+            dest = new int[numStates][];
+            for (int i=0; i<numStates; i++) {
+               letter[i] = new char[count[i]];
+               pop[i] = new char[count[i]];
+               push[i] = new char[count[i]];
+               dest[i] = new int[count[i]];
+               count[i] = 0;
+            }
+         }
+         Enumeration e = function.getDomain();
+         while (e.hasMoreElements()) {
+            TransitionTuple fromTuple = (TransitionTuple) e.nextElement();
+            int p = indexOf(fromTuple.getState());
+            Vector v = function.getTransitions(fromTuple);
+            if (p < 0 || v == null) continue;
+            for (int k=0; k<v.size(); k++) {
+               TransitionTuple toTuple = (TransitionTuple) v.elementAt(k);
+               int q = indexOf(toTuple.getState());
+               if (q < 0) continue;
+               if (pass == 1) {
+                  int m = count[p];
+                  letter[p][m] = fromTuple.getLetter();
+                  pop[p][m] = fromTuple.getSymbol();
+                  push[p][m] = toTuple.getSymbol();
+                  dest[p][m] = q;
+               }
+               count[p]++;
+            }
+         }
+      }
+   }
+
+
+   // ACCESSORS
+
+   /** returns the number of states */
+   public int getNumStates() { return numStates; }
+
+   /** returns the state with the given index */
+   public State getState(int i) { return stateList[i]; }
+
+   /** returns the index of the given state, or -1 if it is not a state of
+       this snapshot */
+   public int indexOf(State s) {
+      Integer i = (Integer) index.get(s);
+      return i == null ? -1 : i.intValue();
+   }
+
+   /** returns the index of the start state, or -1 if it is not a state of
+       this snapshot */
+   public int getStart() { return indexOf(start); }
+
+   /** tests whether the state with the given index is an accept state */
+   public boolean isAccept(int i) { return accept[i]; }
+
+   /** returns the number of moves from the given state */
+   public int getNumMoves(int state) { return letter[state].length; }
+
+   /** returns the letter read by the given move from the given state,
+       or EPSILON if it reads nothing */
+   public char getLetter(int state, int k) { return letter[state][k]; }
+
+   /** returns the symbol popped by the given move from the given state,
+       or EPSILON if it pops nothing */
+   public char getPop(int state, int k) { return pop[state][k]; }
+
+   /** returns the symbol pushed by the given move from the given state,
+       or EPSILON if it pushes nothing */
+   public char getPush(int state, int k) { return push[state][k]; }
+
+   /** returns the destination of the given move from the given state */
+   public int getDest(int state, int k) { return dest[state][k]; }
+
+   /** tests whether this snapshot still matches the automaton with the
+       given Vector of states, start state and transition function */
+   public boolean isUpToDate(Vector states, State start,
+      TransitionFunction function)
+   {
+      if (this.function != function || version != function.getVersion() ||
+         this.start != start || numStates != states.size())
+      {
+         return false;
+      }
+      for (int i=0; i<numStates; i++) {
+         State s = (State) states.elementAt(i);
+         if (s != stateList[i] || s.isAccept() != accept[i]) return false;
+      }
+      return true;
+   }
+
+}
+
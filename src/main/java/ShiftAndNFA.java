@@ -0,0 +1,209 @@
+// ShiftAndNFA.java
+
+/** A bit-parallel simulation of a small non-deterministic finite automaton,
+    with its whole set of current states held in a single long.
+
+    The automaton is first compiled to an epsilon-free Glushkov form, in
+    which each state (a "position") is a pair of an original state and the
+    class of the letter read to reach it, plus one initial position. Since
+    every transition into a position reads a letter of that position's
+    class, a step is the generalized Shift-And recurrence
+
+       D' = follow(D) & mask[class]
+
+    where follow(D) is the union of the follow sets of the positions in D,
+    looked up one byte of D at a time. It applies only to automata with
+    at most 64 positions. */
+public class ShiftAndNFA {
+
+   // CONSTANTS
+
+   /** maximum number of positions */
+   public static final int MAX_POSITIONS = 64;
+
+
+   // STATE VARIABLES
+
+   /** snapshot of the original automaton */
+   private BitSetNFA nfa;
+
+   /** equivalence classes of the letters */
+   private Alphabet alphabet;
+
+   /** number of bytes of the position set in use */
+   private int chunks;
+
+   /** union of the follow sets of each byte value, for each byte of the
+       position set, stored as chunks rows of 256 entries */
+   private long[] follow;
+
+   /** positions reached by each letter class */
+   private long[] masks;
+
+   /** accepting positions */
+   private long accept;
+
+   /** positions from which an accepting position can be reached */
+   private long live;
+
+   /** positions of universal states (see BitSetNFA.isUniversal) */
+   private long universal;
+
+   /** number of positions */
+   private int numPositions;
+
+
+   // CONSTRUCTOR
+
+   /** constructs a bit-parallel simulation of the given automaton snapshot,
+       with the given table of Glushkov positions */
+   private ShiftAndNFA(BitSetNFA nfa, int[] posState, int[] posLetter,
+      long[] posFollow, int numPositions)
+   {
+      this.nfa = nfa;
+      this.numPositions = numPositions;
+      alphabet = nfa.getAlphabet();
+      chunks = (numPositions + 7) / 8;
+      follow = new long[chunks * 256];
+      for (int k=0; k<chunks; k++) {
+         for (int v=1; v<256; v++) {
+            // build each entry from a smaller one plus its lowest bit
+            int low = Integer.numberOfTrailingZeros(v);
+            int p = 8 * k + low;
+            long f = p < numPositions ? posFollow[p] : 0;
+            follow[k * 256 + v] = follow[k * 256 + (v & (v - 1))] | f;
+         }
+      }
+      masks = new long[nfa.getAlphabet().getNumClasses()];
+      long[] set = nfa.newSet();
+      nfa.start(set);
+      for (int p=0; p<numPositions; p++) {
+         if (posLetter[p] > 0) masks[posLetter[p]] |= 1L << p;
+         int q = posState[p];
+         if (q < 0 ? nfa.isAccepting(set) : nfa.isAccept(q)) {
+            accept |= 1L << p;
+         }
+         if (q < 0 ? !nfa.isDead(set) : nfa.isLive(q)) live |= 1L << p;
+         if (q < 0 ? nfa.isUniversal(set) : nfa.isUniversal(q)) {
+            universal |= 1L << p;
+         }
+      }
+   }
+
+
+   // FACTORY METHOD
+
+   /** compiles the given automaton snapshot to a bit-parallel simulation,
+       returning null if its Glushkov form has more than MAX_POSITIONS
+       positions */
+   public static ShiftAndNFA create(BitSetNFA nfa) {
+      int numStates = nfa.getNumStates();
+      int numClasses = nfa.getAlphabet().getNumClasses();
+      int[] posState = new int[MAX_POSITIONS];
+      int[] posLetter = new int[MAX_POSITIONS];
+      long[] posFollow = new long[MAX_POSITIONS];
+
+      // position of each (state, letter class) pair, once discovered
+      int[] ids = new int[numStates * numClasses];
+      for (int i=0; i<ids.length; i++) ids[i] = -1;
+
+      // position 0 stands for the start states
+      posState[0] = -1;
+      posLetter[0] = 0;
+      int n = 1;
+      long[] set = nfa.newSet();
+      long[] next = nfa.newSet();
+      for (int p=0; p<n; p++) {
+         if (posState[p] < 0) nfa.start(set);
+         else {
+            for (int w=0; w<set.length; w++) set[w] = 0;
+            BitSetNFA.set(set, posState[p]);
+         }
+         for (int l=1; l<numClasses; l++) {
+            nfa.stepClass(set, l, next);
+            long f = 0;
+            for (int w=0; w<next.length; w++) {
+               long bits = next[w];
+               while (bits != 0) {
+                  int t = (w << 6) + Long.numberOfTrailingZeros(bits);
+                  bits &= bits - 1;
+                  int e = t * numClasses + l;
+                  if (ids[e] < 0) {
+                     if (n == MAX_POSITIONS) return null;
+                     ids[e] = n;
+                     posState[n] = t;
+                     posLetter[n] = l;
+                     n++;
+                  }
+                  f |= 1L << ids[e];
+               }
+            }
+            posFollow[p] |= f;
+         }
+      }
+      return new ShiftAndNFA(nfa, posState, posLetter, posFollow, n);
+   }
+
+
+   // SIMULATION
+
+   /** returns the set of positions before any letters are read */
+   public long start() { return 1L; }
+
+   /** returns the set of positions reached from the given set
+       by reading the given letter */
+   public long step(long d, char l) {
+      long f = 0;
+      for (int k=0; k<chunks; k++) {
+         f |= follow[(k << 8) | (int) ((d >>> (k << 3)) & 0xff)];
+      }
+      return f & masks[alphabet.classOf(l)];
+   }
+
+   /** tests whether the given set of positions includes an accepting one */
+   public boolean isAccepting(long d) { return (d & accept) != 0; }
+
+   /** runs this automaton over the given word, returning whether it
+       accepts; the run stops as soon as its outcome no longer depends on
+       the letters left to read */
+   public boolean accepts(CharSequence word) { return accepts(word, 0, 1L); }
+
+   /** runs this automaton over the given word from the given index on,
+       starting from the given set of positions, returning whether it
+       accepts */
+   public boolean accepts(CharSequence word, int from, long d) {
+      int len = word.length();
+      for (int i=from; i<len; i++) {
+         if ((d & live) == 0) return false;
+         if ((d & universal) != 0) return alphabet.covers(word, i);
+         d = step(d, word.charAt(i));
+      }
+      return (d & accept) != 0;
+   }
+
+
+   // ACCESSORS
+
+   /** returns the number of positions of the Glushkov form */
+   public int getNumPositions() { return numPositions; }
+
+   /** returns the equivalence classes of the letters */
+   public Alphabet getAlphabet() { return alphabet; }
+
+   /** returns the follow set of the given position */
+   public long getFollow(int p) {
+      return follow[((p >> 3) << 8) | (1 << (p & 7))];
+   }
+
+   /** returns the positions reached by the given letter class */
+   public long getMask(int cls) { return masks[cls]; }
+
+   /** returns the accepting positions */
+   public long getAccept() { return accept; }
+
+   /** returns the positions from which an accepting position
+       can be reached */
+   public long getLive() { return live; }
+
+}
+
@@ -0,0 +1,48 @@
+// StateSet.java
+
+/** An immutable set of state indices, stored as a bitset,
+    for use as a key in a Hashtable. */
+public class StateSet {
+
+   // STATE VARIABLES
+
+   /** the bitset of state indices */
+   private long[] bits;
+
+   /** hash code of the bitset */
+   private int hash;
+
+
+   // CONSTRUCTOR
+
+   /** constructs a set containing the state indices of the given bitset,
+       which is copied */
+   public StateSet(long[] bits) {
+      this.bits = (long[]) bits.clone();
+      hash = java.util.Arrays.hashCode(bits);
+   }
+
+
+   // ACCESSORS
+
+   /** returns the bitset of state indices; it must not be modified */
+   public long[] getBits() { return bits; }
+
+   /** tests whether this set contains the given state index */
+   public boolean contains(int i) { return BitSetNFA.contains(bits, i); }
+
+
+   // HASHTABLE-RELATED METHODS
+
+   /** returns a hash code for this set */
+   public int hashCode() { return hash; }
+
+   /** tests whether two StateSets are equal */
+   public boolean equals(Object o) {
+      if (!(o instanceof StateSet)) return false;
+      StateSet set = (StateSet) o;
+      return hash == set.hash && java.util.Arrays.equals(bits, set.bits);
+   }
+
+}
+
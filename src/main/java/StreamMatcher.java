@@ -0,0 +1,102 @@
+// StreamMatcher.java
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+
+/** An incremental matcher that is fed a word in chunks, so that input
+    arriving over a socket or stored in a huge file can be checked for
+    acceptance without ever holding the whole word in memory. A matcher's
+    memory use depends only on the size of its automaton. Bytes are read
+    as the characters 0-255. */
+public abstract class StreamMatcher {
+
+   // CONSTANTS
+
+   /** size of the chunks in which readers and files are fed */
+   private static final int CHUNK_SIZE = 1 << 16;
+
+   /** size of the regions in which files are memory mapped */
+   private static final long MAP_SIZE = 1L << 26;
+
+
+   // STATE VARIABLES
+
+   /** number of characters fed since the last reset */
+   protected long position;
+
+
+   // ABSTRACT METHODS
+
+   /** feeds the given range of characters to the matcher */
+   public abstract void feed(char[] buf, int off, int len);
+
+   /** feeds the given range of bytes to the matcher, by absolute index
+       and without changing the buffer's position */
+   public abstract void feed(ByteBuffer buf, int off, int len);
+
+   /** returns whether the automaton accepts the characters fed so far;
+       more characters may still be fed afterwards */
+   public abstract boolean finish();
+
+   /** starts over with an empty word */
+   public abstract void reset();
+
+
+   // FEEDING METHODS
+
+   /** feeds the given characters to the matcher */
+   public void feed(CharSequence s) {
+      char[] buf = new char[Math.min(s.length(), CHUNK_SIZE)];
+      int len = s.length();
+      for (int off=0; off<len; off+=buf.length) {
+         int n = Math.min(buf.length, len - off);
+         for (int i=0; i<n; i++) buf[i] = s.charAt(off + i);
+         feed(buf, 0, n);
+      }
+   }
+
+   /** feeds the remaining bytes of the given buffer to the matcher,
+       advancing the buffer's position */
+   public void feed(ByteBuffer buf) {
+      feed(buf, buf.position(), buf.remaining());
+      buf.position(buf.limit());
+   }
+
+   /** feeds every character of the given reader to the matcher */
+   public void feed(Reader in) throws IOException {
+      char[] buf = new char[CHUNK_SIZE];
+      while (true) {
+         int n = in.read(buf, 0, buf.length);
+         if (n < 0) break;
+         feed(buf, 0, n);
+      }
+   }
+
+   /** feeds every byte of the given file to the matcher, memory mapping
+       the file one region at a time rather than reading it into memory */
+   public void feed(File file) throws IOException {
+      FileInputStream in = new FileInputStream(file);
+      try {
+         FileChannel channel = in.getChannel();
+         long size = channel.size();
+         for (long off=0; off<size; off+=MAP_SIZE) {
+            long len = Math.min(MAP_SIZE, size - off);
+            MappedByteBuffer buf =
+               channel.map(FileChannel.MapMode.READ_ONLY, off, len);
+            feed(buf, 0, (int) len);
+         }
+      }
+      finally {
+         in.close();
+      }
+   }
+
+
+   // ACCESSORS
+
+   /** returns the number of characters fed since the last reset */
+   public long getPosition() { return position; }
+
+}
+
@@ -0,0 +1,108 @@
+// TMRun.java
+
+/** A computation of a compiled Turing machine on a tape, run for at most
+    a given number of steps at a time. Each step looks up one packed move
+    and reads, writes and moves the head of the tape; nothing is allocated
+    and nothing is locked, so a run executes millions of steps per second.
+    A step on a symbol for which the machine has no transition rejects, as
+    does reaching the reject state. */
+public class TMRun {
+
+   // CONSTANTS
+
+   /** result of a computation that rejected */
+   public static final int REJECTED = 0;
+
+   /** result of a computation that accepted */
+   public static final int ACCEPTED = 1;
+
+   /** result of a computation that has not halted yet */
+   public static final int RUNNING = 2;
+
+
+   // STATE VARIABLES
+
+   /** the machine */
+   private CompiledTM tm;
+
+   /** the tape */
+   private Tape tape;
+
+   /** index of the current state */
+   private int state;
+
+   /** number of steps taken */
+   private long steps;
+
+   /** result of the computation so far */
+   private int result = RUNNING;
+
+
+   // CONSTRUCTOR
+
+   /** starts a computation of the given compiled machine on the given
+       tape, in the state with the given index */
+   public TMRun(CompiledTM tm, Tape tape, int state) {
+      this.tm = tm;
+      this.tape = tape;
+      this.state = state;
+      if (state < 0) result = REJECTED;
+      else if (state == tm.getAccept()) result = ACCEPTED;
+      else if (state == tm.getReject()) result = REJECTED;
+   }
+
+
+   // SIMULATION
+
+   /** runs the computation until it halts or until it has taken the given
+       number of steps more, and returns its result */
+   public int run(long maxSteps) {
+      if (result != RUNNING) return result;
+      int accept = tm.getAccept(), reject = tm.getReject();
+      int s = state;
+      long n = 0;
+      while (n < maxSteps) {
+         long move = tm.next(s, tape.read());
+         n++;
+         if (move < 0) {
+            result = REJECTED;
+            break;
+         }
+         tape.write((char) move);
+         tape.move((move & CompiledTM.RIGHT) != 0);
+         s = (int) (move >>> 32);
+         if (s == accept) {
+            result = ACCEPTED;
+            break;
+         }
+         if (s == reject) {
+            result = REJECTED;
+            break;
+         }
+      }
+      state = s;
+      steps += n;
+      return result;
+   }
+
+
+   // ACCESSORS
+
+   /** returns the result of the computation so far: ACCEPTED, REJECTED,
+       or RUNNING if it has not halted */
+   public int getResult() { return result; }
+
+   /** returns the number of steps taken */
+   public long getSteps() { return steps; }
+
+   /** returns the index of the current state */
+   public int getState() { return state; }
+
+   /** returns the tape */
+   public Tape getTape() { return tape; }
+
+   /** returns the compiled machine */
+   public CompiledTM getTM() { return tm; }
+
+}
+
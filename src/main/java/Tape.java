@@ -0,0 +1,120 @@
+// Tape.java
+
+import java.util.*;
+
+/** The tape of a Turing machine, with a head that reads and writes one
+    cell at a time. The cells are kept in a char array that doubles in
+    size whenever the head moves past either end of it, so reads, writes
+    and moves take constant (amortized) time however long the tape gets.
+    Cells that have never been written hold the blank symbol. A tape is
+    either infinite to the right only, in which case a head moving left
+    from the first cell stays where it is, or infinite in both
+    directions. */
+public class Tape {
+
+   // STATE VARIABLES
+
+   /** the cells */
+   private char[] cells;
+
+   /** index in cells of the first letter of the input */
+   private int origin;
+
+   /** index in cells of the head */
+   private int head;
+
+   /** index in cells of the leftmost cell visited */
+   private int low;
+
+   /** index in cells just past the rightmost cell of the input,
+       written or visited */
+   private int high;
+
+   /** the blank symbol */
+   private char blank;
+
+   /** whether the tape extends to the left of the input */
+   private boolean leftInfinite;
+
+
+   // CONSTRUCTOR
+
+   /** constructs a tape holding the given input followed (and preceded,
+       if the tape is infinite in both directions) by blanks, with the
+       head on the first letter of the input */
+   public Tape(CharSequence input, char blank, boolean leftInfinite) {
+      this.blank = blank;
+      this.leftInfinite = leftInfinite;
+      int n = input.length();
+      cells = new char[Math.max(16, 2 * n)];
+      for (int i=0; i<n; i++) cells[i] = input.charAt(i);
+      Arrays.fill(cells, n, cells.length, blank);
+      high = n;
+   }
+
+
+   // MODIFIERS
+
+   /** writes the given symbol in the cell under the head */
+   public void write(char symbol) {
+      cells[head] = symbol;
+      if (head >= high) high = head + 1;
+   }
+
+   /** moves the head one cell to the right or to the left */
+   public void move(boolean right) {
+      if (right) {
+         head++;
+         if (head == cells.length) grow(false);
+         if (head >= high) high = head + 1;
+      }
+      else {
+         if (head == origin && !leftInfinite) return;
+         if (head == 0) grow(true);
+         head--;
+         if (head < low) low = head;
+      }
+   }
+
+
+   // ACCESSORS
+
+   /** returns the symbol in the cell under the head */
+   public char read() { return cells[head]; }
+
+   /** returns the position of the head, counting from 0 at the first
+       letter of the input; it is negative left of the input */
+   public int getPosition() { return head - origin; }
+
+   /** returns the position of the leftmost cell visited,
+       which is never positive */
+   public int getLeftmost() { return low - origin; }
+
+   /** tests whether the tape extends to the left of the input */
+   public boolean isLeftInfinite() { return leftInfinite; }
+
+   /** returns the cells from the leftmost cell visited to the rightmost
+       cell of the input, written or visited */
+   public String toString() { return new String(cells, low, high - low); }
+
+
+   // HELPER METHODS
+
+   /** doubles the size of the cell array, adding blank cells
+       on the left or on the right */
+   private void grow(boolean left) {
+      int n = cells.length;
+      char[] c = new char[2 * n];
+      int shift = left ? n : 0;
+      System.arraycopy(cells, 0, c, shift, n);
+      if (left) Arrays.fill(c, 0, n, blank);
+      else Arrays.fill(c, n, 2 * n, blank);
+      cells = c;
+      origin += shift;
+      head += shift;
+      low += shift;
+      high += shift;
+   }
+
+}
+
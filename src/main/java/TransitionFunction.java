@@ -27,6 +27,12 @@ public class TransitionFunction {
    /** whether this transition function is deterministic */
    private boolean deterministic;
 
+   /** number of modifications made to this transition function */
+   private int version;
+
+   /** number of modifications made to epsilon transitions */
+   private int epsilonVersion;
+
 
    // CONSTRUCTOR
 
@@ -53,6 +59,7 @@ public class TransitionFunction {
       // add the new transition to the transition Vector
       if (deterministic) v.removeAllElements();
       v.addElement(toTuple);
+      modified(fromTuple);
    }
 
    /** removes the transition from one tuple to another tuple */
@@ -64,7 +71,26 @@ public class TransitionFunction {
       if (v == null) return;
 
       // remove the transition from the transition Vector
-      if (v.contains(toTuple)) v.removeElement(toTuple);
+      if (v.contains(toTuple)) {
+         v.removeElement(toTuple);
+         modified(fromTuple);
+      }
+   }
+
+   /** removes every transition leading to the given state */
+   public void removeTransitionsTo(State state) {
+      Enumeration e = transitions.keys();
+      while (e.hasMoreElements()) {
+         TransitionTuple fromTuple = (TransitionTuple) e.nextElement();
+         Vector v = (Vector) transitions.get(fromTuple);
+         for (int i=v.size()-1; i>=0; i--) {
+            TransitionTuple toTuple = (TransitionTuple) v.elementAt(i);
+            if (toTuple.getState() == state) {
+               v.removeElementAt(i);
+               modified(fromTuple);
+            }
+         }
+      }
    }
 
 
@@ -85,6 +111,16 @@ public class TransitionFunction {
       return (TransitionTuple) v.elementAt(0);
    }
 
+   /** returns an enumeration of the domain tuples with transitions */
+   public Enumeration getDomain() { return transitions.keys(); }
+
+   /** returns the number of modifications made to this transition function,
+       so that compiled snapshots of it can tell when they are out of date */
+   public int getVersion() { return version; }
+
+   /** returns the number of modifications made to epsilon transitions */
+   public int getEpsilonVersion() { return epsilonVersion; }
+
    /** tests whether a given transition is present in the function */
    public boolean hasTransition(TransitionTuple fromTuple,
       TransitionTuple toTuple)
@@ -94,5 +130,16 @@ public class TransitionFunction {
       return v != null && v.contains(toTuple);
    }
 
+
+   // HELPER METHODS
+
+   /** records a modification to the transitions from the given tuple */
+   private void modified(TransitionTuple fromTuple) {
+      version++;
+      if (fromTuple.getLetter() == FiniteStateMachine.EPSILON) {
+         epsilonVersion++;
+      }
+   }
+
 }
 
@@ -23,12 +23,14 @@ public class TuringMachine extends FiniteStateMachine {
    /** the reject state */
    private State reject;
 
-   /** the contents of the tape.  Characters beyond the end of the string
-       are assumed to be the blank symbol. */
-   private String tape;
+   /** the current computation's tape */
+   private Tape tape;
 
-   /** the current computation's position on the tape */
-   private int pos;
+   /** whether tapes extend to the left of the input */
+   private boolean leftInfinite;
+
+   /** compiled snapshot of this Turing machine used to run computations */
+   private CompiledTM compiled;
 
    /** a buffer containing keystrokes typed */
    private String keyBuf = "";
@@ -75,22 +77,18 @@ public class TuringMachine extends FiniteStateMachine {
 
       synchronized (states) {
          // sever all transition function connections before removing state
-         for (int i=0; i<numStates; i++) {
-            State s = (State) states.elementAt(i);
-            for (char so=33; so<127; so++) {
-               for (char de=33; de<127; de++) {
-                  TransitionTuple from = new TransitionTuple(s, so);
-                  TransitionTuple toL = new TransitionTuple(state, de, false);
-                  TransitionTuple toR = new TransitionTuple(state, de, true);
-                  function.removeTransition(from, toL);
-                  function.removeTransition(from, toR);
-               }
-            }
-         }
+         function.removeTransitionsTo(state);
       }
       super.removeState(state);
    }
 
+   /** sets whether the tapes of later computations extend to the left of
+       the input; if not, a head moving left from the first cell stays
+       where it is */
+   public void setLeftInfinite(boolean leftInfinite) {
+      this.leftInfinite = leftInfinite;
+   }
+
 
    // REQUIRED MODIFIERS
 
@@ -101,8 +99,7 @@ public class TuringMachine extends FiniteStateMachine {
          step = 0;
          answer = null;
          current = start;
-         tape = word;
-         pos = 0;
+         tape = new Tape(word, BLANK, leftInfinite);
          synchAndCheck();
       }
    }
@@ -126,9 +123,8 @@ public class TuringMachine extends FiniteStateMachine {
          }
 
          // get the transition from the current state
-         if (pos == tape.length()) tape = tape + BLANK;
          Vector next = function.getTransitions(
-            new TransitionTuple(current, tape.charAt(pos)));
+            new TransitionTuple(current, tape.read()));
          if (next != null && next.size() > 0) {
             // there is a valid transition
             TransitionTuple t = (TransitionTuple) next.elementAt(0);
@@ -136,9 +132,8 @@ public class TuringMachine extends FiniteStateMachine {
             char symbol = t.getSymbol();
             boolean dir = t.getDirection();
             current = ns;
-            pos += (dir ? 1 : -1);
-            if (pos < 0) pos = 0;
-            tape = tape.substring(0, pos) + symbol + tape.substring(pos + 1);
+            tape.write(symbol);
+            tape.move(dir);
          }
          else {
             // computation is dead
@@ -153,6 +148,26 @@ public class TuringMachine extends FiniteStateMachine {
       }
    }
 
+   /** advances the current computation the given number of steps at a
+       time, running a compiled snapshot of this Turing machine and
+       redrawing only once at the end */
+   public void step(int n) {
+      synchronized (states) {
+         if (n <= 1 || answer != null || word == null) {
+            super.step(n);
+            return;
+         }
+         CompiledTM c = getCompiled();
+         TMRun r = new TMRun(c, tape, c.indexOf(current));
+         if (r.run(n) == TMRun.REJECTED) answer = new Boolean(false);
+         if (r.getState() >= 0) current = c.getState(r.getState());
+         step += (int) r.getSteps();
+
+         // make sure states' current bits are up-to-date
+         synchAndCheck();
+      }
+   }
+
    /** called whenever a key is pressed and a transition destination state
        exists. Needed so that each subclass can use the keystrokes to set up
        transitions according to its own model */
@@ -243,14 +258,40 @@ public class TuringMachine extends FiniteStateMachine {
    // ACCESSORS
 
    /** returns the TM's tape at the current position in the computation */
-   public String getTape() { return tape; }
-   
-   /** returns the current tape position in the computation */
-   public int getPosition() { return pos; }
+   public String getTape() { return tape == null ? null : tape.toString(); }
+
+   /** returns the current tape position in the computation,
+       as an index into the string returned by getTape() */
+   public int getPosition() {
+      return tape == null ? 0 : tape.getPosition() - tape.getLeftmost();
+   }
+
+   /** tests whether the tapes of computations extend to the left of
+       the input */
+   public boolean isLeftInfinite() { return leftInfinite; }
+
+   /** runs a computation on the given word for at most the given number of
+       steps, without touching the display, and returns it; its result is
+       TMRun.ACCEPTED, TMRun.REJECTED, or TMRun.RUNNING if the machine had
+       not halted within the steps */
+   public TMRun run(CharSequence word, long maxSteps) {
+      CompiledTM c = getCompiled();
+      TMRun r = new TMRun(c, new Tape(word, BLANK, leftInfinite),
+         c.getStart());
+      r.run(maxSteps);
+      return r;
+   }
 
 
    // REQUIRED ACCESSORS
 
+   /** runs a whole computation on the given word and returns whether this
+       Turing machine accepts it, without touching the display; like any
+       Turing machine computation, it may never halt */
+   public boolean accepts(CharSequence word) {
+      return run(word, Long.MAX_VALUE).getResult() == TMRun.ACCEPTED;
+   }
+
    /** returns a set of strings representing the transitions from the given
        source state to the given destination state */
    protected String[] getTransitionStrings(State source, State dest) {
@@ -262,6 +303,20 @@ public class TuringMachine extends FiniteStateMachine {
 
    // HELPER METHODS
 
+   /** returns a compiled snapshot of this Turing machine
+       as currently defined */
+   private CompiledTM getCompiled() {
+      synchronized (states) {
+         if (compiled == null ||
+            !compiled.isUpToDate(states, start, function))
+         {
+            compiled = new CompiledTM(states, start, accept, reject,
+               function);
+         }
+         return compiled;
+      }
+   }
+
    /** makes sure each state knows whether or not it's a current state,
        then checks whether the computation is finished */
    private void synchAndCheck() {
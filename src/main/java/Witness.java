@@ -0,0 +1,114 @@
+// Witness.java
+
+/** Reconstructs one accepting run of a finite automaton on a word, for
+    explaining why the word was accepted. Rather than keeping the set of
+    current states after every letter, a first pass keeps only every k-th
+    set, for k about the square root of the word's length; the run is then
+    traced backwards from an accept state one block of k letters at a
+    time, recomputing the sets of each block from its checkpoint. Memory
+    stays proportional to the square root of the length, at the cost of
+    reading the word twice. */
+public class Witness {
+
+   // STATE VARIABLES
+
+   /** the automaton */
+   private BitSetNFA nfa;
+
+   /** state index after reading each prefix of the word,
+       or null if the word is rejected */
+   private int[] run;
+
+   /** number of checkpoints kept */
+   private int checkpoints;
+
+
+   // CONSTRUCTORS
+
+   /** explains a snapshot of the given finite automaton on the given word */
+   public Witness(FiniteAutomaton fa, CharSequence word) {
+      this(fa.getNFA(), word);
+   }
+
+   /** explains the given automaton snapshot on the given word */
+   public Witness(BitSetNFA nfa, CharSequence word) {
+      this.nfa = nfa;
+      Alphabet alphabet = nfa.getAlphabet();
+      int n = word.length();
+      int k = 1;
+      while (k * k < n) k++;
+
+      // forward pass, keeping the set before each block
+      long[][] saved = new long[(n + k - 1) / k][];
+      long[] cur = nfa.newSet(), next = nfa.newSet();
+      nfa.start(cur);
+      for (int i=0; i<n; i++) {
+         if (i % k == 0) saved[checkpoints++] = (long[]) cur.clone();
+         if (!nfa.step(cur, word.charAt(i), next)) return;
+         long[] t = cur;
+         cur = next;
+         next = t;
+      }
+      if (!nfa.isAccepting(cur)) return;
+
+      // pick an accept state, then trace the run back block by block
+      run = new int[n + 1];
+      run[n] = pick(cur, 0, -1);
+      long[][] block = new long[k + 1][];
+      for (int i=1; i<=k; i++) block[i] = nfa.newSet();
+      for (int j=checkpoints-1; j>=0; j--) {
+         int from = j * k, to = Math.min(n, from + k);
+         block[0] = saved[j];
+         for (int i=from; i<to; i++) {
+            nfa.step(block[i - from], word.charAt(i), block[i - from + 1]);
+         }
+         for (int i=to; i>from; i--) {
+            int c = alphabet.classOf(word.charAt(i - 1));
+            run[i - 1] = pick(block[i - 1 - from], c, run[i]);
+         }
+      }
+   }
+
+
+   // ACCESSORS
+
+   /** tests whether the word is accepted */
+   public boolean isAccepted() { return run != null; }
+
+   /** returns the state of an accepting run after reading each prefix of
+       the word, from the start state to an accept state, or null if the
+       word is rejected; states passed through by epsilon transitions
+       between two letters are not listed */
+   public State[] getRun() {
+      if (run == null) return null;
+      State[] states = new State[run.length];
+      for (int i=0; i<run.length; i++) states[i] = nfa.getState(run[i]);
+      return states;
+   }
+
+   /** returns the number of sets kept by the first pass,
+       which may have stopped early */
+   public int getCheckpoints() { return checkpoints; }
+
+
+   // HELPER METHODS
+
+   /** returns a state of the given set that is an accept state (if next
+       is negative) or from which the given next state is reachable by
+       reading a letter of the given class */
+   private int pick(long[] set, int c, int next) {
+      for (int w=0; w<set.length; w++) {
+         long bits = set[w];
+         while (bits != 0) {
+            int q = (w << 6) + Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+            if (next < 0 ? nfa.isAccept(q) : nfa.isSuccessor(q, c, next)) {
+               return q;
+            }
+         }
+      }
+      return -1;
+   }
+
+}
+